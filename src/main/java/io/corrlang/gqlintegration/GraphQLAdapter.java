@@ -5,7 +5,11 @@ import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonParser;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.cache.Cache;
 import io.corrlang.domain.*;
+import io.corrlang.gqlintegration.caller.IntrospectionQuery;
+import io.corrlang.gqlintegration.caller.SchemaSnapshotStore;
+import io.corrlang.gqlintegration.caller.UpstreamConnectionPool;
 import io.corrlang.gqlintegration.queries.GraphQLQueryDivider;
 import io.corrlang.gqlintegration.schema.GraphQLSchemaReader;
 import io.corrlang.gqlintegration.schema.GraphQLSchemaWriter;
@@ -21,6 +25,8 @@ import io.corrlang.plugins.techspace.TechSpaceAdapter;
 import io.corrlang.plugins.techspace.TechSpaceDirective;
 import io.corrlang.plugins.techspace.TechSpaceException;
 import io.corrlang.plugins.techspace.TechnologySpecificRules;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 
 import java.io.*;
 import java.net.ConnectException;
@@ -30,21 +36,51 @@ import java.util.*;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
-public class GraphQLAdapter implements TechSpaceAdapter<GraphQLTechSpace>, TechSpaceDirective {
+public class GraphQLAdapter implements TechSpaceAdapter<GraphQLTechSpace>, TechSpaceDirective, AutoCloseable {
 
 
+    private final Logger logger = LogManager.getLogger(GraphQLAdapter.class);
     private final Universe universe;
     private final PropertyHolder propertyHolder;
     private final JsonFactory jsonFactory;
     private final ObjectMapper objectMapper;
+    private final GraphQLRuntime runtime;
+    // the runtime is only shut down by the adapter if the adapter has created it
+    private final boolean ownsRuntime;
 
+    /**
+     * Creates an adapter with its own runtime, which is shut down when the adapter is closed.
+     */
     public GraphQLAdapter(Universe universe, PropertyHolder propertyHolder) {
+        this(universe, propertyHolder, new GraphQLRuntime(propertyHolder), true);
+    }
+
+    /**
+     * Creates an adapter on a shared runtime, which stays with the caller.
+     */
+    public GraphQLAdapter(Universe universe, PropertyHolder propertyHolder, GraphQLRuntime runtime) {
+        this(universe, propertyHolder, runtime, false);
+    }
+
+    private GraphQLAdapter(Universe universe, PropertyHolder propertyHolder, GraphQLRuntime runtime, boolean ownsRuntime) {
         this.universe = universe;
         this.propertyHolder = propertyHolder;
+        this.runtime = runtime;
+        this.ownsRuntime = ownsRuntime;
         this.jsonFactory = new JsonFactory();
         this.objectMapper = new ObjectMapper(jsonFactory);
     }
 
+    /**
+     * Shuts down the runtime if this adapter has created it.
+     */
+    @Override
+    public void close() {
+        if (ownsRuntime) {
+            runtime.shutdown();
+        }
+    }
+
     public JsonParser jsonParser(InputStream inputStream) throws IOException {
         return jsonFactory.createParser(inputStream);
     }
@@ -59,7 +95,21 @@ public class GraphQLAdapter implements TechSpaceAdapter<GraphQLTechSpace>, TechS
 
     public Sys parseSchema(Name schemaName, String fromURI) throws TechSpaceException, UnsupportedFeatureException {
         try {
-            return GraphQLEndpoint.createFromUrl(fromURI, schemaName, new GraphQLSchemaReader(universe), objectMapper, jsonFactory);
+            if (isLocalFile(fromURI)) {
+                return GraphQLEndpoint.createFromUrl(fromURI, schemaName, new GraphQLSchemaReader(universe), objectMapper, jsonFactory, null);
+            }
+            UpstreamConnectionPool connectionPool = runtime.connectionPool(fromURI, schemaName.printRaw());
+            SchemaSnapshotStore snapshots = runtime.schemaSnapshots(objectMapper);
+            if (snapshots == null) {
+                return GraphQLEndpoint.createFromUrl(fromURI, schemaName, new GraphQLSchemaReader(universe), objectMapper, jsonFactory, connectionPool);
+            }
+            GraphQLEndpoint fromSnapshot = fromSnapshot(snapshots, schemaName, fromURI, connectionPool);
+            if (fromSnapshot != null) {
+                return fromSnapshot;
+            }
+            Map<String, Object> introspectionResult = new IntrospectionQuery().getIntrospectionResult(connectionPool);
+            storeSnapshot(snapshots, schemaName, fromURI, introspectionResult);
+            return GraphQLEndpoint.createFromIntrospection(fromURI, schemaName, new GraphQLSchemaReader(universe), introspectionResult, objectMapper, jsonFactory, connectionPool);
         } catch (ConnectException ce) {
             throw new TechSpaceException("GraphQL endpoint at URL '" + fromURI + "' is not running!", GraphQLTechSpace.INSTANCE);
         } catch (URISyntaxException | IOException | GraphError e) {
@@ -67,13 +117,56 @@ public class GraphQLAdapter implements TechSpaceAdapter<GraphQLTechSpace>, TechS
         }
     }
 
+    /**
+     * Imports the schema from its snapshot (null if there is no usable one) and checks the snapshot against the live endpoint in the background.
+     */
+    private GraphQLEndpoint fromSnapshot(SchemaSnapshotStore snapshots, Name schemaName, String url, UpstreamConnectionPool connectionPool) throws UnsupportedFeatureException {
+        Optional<Map<String, Object>> snapshot = snapshots.load(url, schemaName.printRaw());
+        if (!snapshot.isPresent()) {
+            return null;
+        }
+        GraphQLEndpoint endpoint;
+        try {
+            endpoint = GraphQLEndpoint.createFromIntrospection(url, schemaName, new GraphQLSchemaReader(universe), snapshot.get(), objectMapper, jsonFactory, connectionPool);
+        } catch (GraphError | RuntimeException e) {
+            logger.warn("Schema snapshot of '" + url + "' is broken, importing it from the endpoint instead", e);
+            return null;
+        }
+        if (runtime.isRevalidateSchemaSnapshots()) {
+            runtime.runInBackground(() -> {
+                try {
+                    Map<String, Object> live = new IntrospectionQuery().getIntrospectionResult(connectionPool);
+                    if (!live.equals(snapshot.get())) {
+                        storeSnapshot(snapshots, schemaName, url, live);
+                        logger.warn("The schema of '" + url + "' has changed since its snapshot was taken, the new schema is used after the next restart");
+                    }
+                } catch (IOException | RuntimeException e) {
+                    logger.info("Could not revalidate the schema snapshot of '" + url + "'", e);
+                }
+            });
+        }
+        return endpoint;
+    }
+
+    private void storeSnapshot(SchemaSnapshotStore snapshots, Name schemaName, String url, Map<String, Object> introspectionResult) {
+        try {
+            snapshots.store(url, schemaName.printRaw(), introspectionResult);
+        } catch (IOException e) {
+            logger.warn("Could not store the schema snapshot of '" + url + "' in '" + snapshots.getDirectory() + "'", e);
+        }
+    }
+
+    private static boolean isLocalFile(String uri) {
+        return uri.startsWith("file") || uri.startsWith(".");
+    }
+
     @Override
     public void writeSchema(Sys sys, OutputStream outputStream) throws TechSpaceException, UnsupportedFeatureException {
         try {
             GraphQLSchemaWriter schemaWriter = new GraphQLSchemaWriter(sys);
             BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(outputStream));
             sys.schema().accept(schemaWriter);
-            schemaWriter.printToBuffer(writer);
+            schemaWriter.printTo(writer);
             writer.flush();
             writer.close();
         } catch (IOException e) {
@@ -88,19 +181,51 @@ public class GraphQLAdapter implements TechSpaceAdapter<GraphQLTechSpace>, TechS
             return endpoint.getOrCreateQueryHandler(objectMapper, jsonFactory);
         }
         if (system instanceof ComprSys) {
-            ComprSys comprSys = (ComprSys) system;
-            LinkedHashMap<Sys, QueryHandler> handlerMap = new LinkedHashMap<>();
-            for (Sys sys : comprSys.components().collect(Collectors.toList())) {
-                QueryHandler queryHandler = queryHandler(sys);
-                handlerMap.put(sys, queryHandler);
+            return federationHandler((ComprSys) system);
+        }
+        throw new TechSpaceException("Cannot create GraphQL handler for '" + system.url() + "'!", GraphQLTechSpace.INSTANCE);
+    }
+
+    /**
+     * The handler of the given comprehensive system, which is only built again when the schema of the system has changed.
+     */
+    private GraphQLQueryDivider federationHandler(ComprSys comprSys) throws TechSpaceException, UnsupportedFeatureException {
+        Cache<ComprSys, GraphQLQueryDivider> cache = runtime.federationHandlers();
+        GraphQLQueryDivider divider = cache.getIfPresent(comprSys);
+        if (divider == null || !divider.isUpToDate()) {
+            synchronized (cache) {
+                divider = cache.getIfPresent(comprSys);
+                if (divider == null || !divider.isUpToDate()) {
+                    divider = createFederationHandler(comprSys);
+                    cache.put(comprSys, divider);
+                }
             }
-            try {
-                return GraphQLQueryDivider.create(objectMapper, jsonFactory, comprSys, handlerMap);
-            } catch (IOException e) {
-                throw new TechSpaceException("Cannot create GraphQL handler for '" + system.url() + "'!", e, GraphQLTechSpace.INSTANCE);
+        }
+        return divider;
+    }
+
+    private GraphQLQueryDivider createFederationHandler(ComprSys comprSys) throws TechSpaceException, UnsupportedFeatureException {
+        LinkedHashMap<Sys, QueryHandler> handlerMap = new LinkedHashMap<>();
+        for (Sys sys : comprSys.components().collect(Collectors.toList())) {
+            QueryHandler queryHandler = queryHandler(sys);
+            handlerMap.put(sys, queryHandler);
+        }
+        try {
+            GraphQLQueryDivider divider = GraphQLQueryDivider.create(objectMapper, jsonFactory, comprSys, handlerMap, runtime.upstreamExecutor());
+            divider.setRequestExecutor(runtime.requestExecutor());
+            divider.setIncrementalMerge(runtime.isIncrementalMerge());
+            divider.setPlanCacheSize(runtime.getPlanCacheSize());
+            divider.setParseCacheWeight(runtime.getParseCacheWeight());
+            File manifest = runtime.persistedQueriesManifest();
+            if (manifest != null) {
+                try (InputStream manifestStream = new FileInputStream(manifest)) {
+                    divider.loadPersistedQueries(manifestStream);
+                }
             }
+            return divider;
+        } catch (IOException e) {
+            throw new TechSpaceException("Cannot create GraphQL handler for '" + comprSys.url() + "'!", e, GraphQLTechSpace.INSTANCE);
         }
-        throw new TechSpaceException("Cannot create GraphQL handler for '" + system.url() + "'!", GraphQLTechSpace.INSTANCE);
     }
 
     @Override
@@ -19,19 +19,31 @@ public class GraphQLAdapterFactory implements TechSpaceAdapterFactory<GraphQLTec
     @Autowired
     private PropertyHolder propertyHolder;
 
+    private GraphQLRuntime runtime;
+
+    private synchronized GraphQLRuntime getOrCreateRuntime() {
+        if (runtime == null) {
+            runtime = new GraphQLRuntime(propertyHolder);
+        }
+        return runtime;
+    }
+
     @Override
     public void doSetUp() {
-
+        getOrCreateRuntime().start();
     }
 
     @Override
     public GraphQLAdapter createAdapter() {
-        return new GraphQLAdapter(universe, propertyHolder);
+        return new GraphQLAdapter(universe, propertyHolder, getOrCreateRuntime());
     }
 
     @Override
-    public void prepareShutdown() {
-
+    public synchronized void prepareShutdown() {
+        if (runtime != null) {
+            runtime.shutdown();
+            runtime = null;
+        }
     }
 
     @PostConstruct
@@ -12,8 +12,10 @@ import io.corrlang.domain.Sys;
 import io.corrlang.gqlintegration.schema.EntryPointType;
 import io.corrlang.gqlintegration.schema.FieldMult;
 import io.corrlang.gqlintegration.schema.GraphQLSchemaReader;
+import io.corrlang.gqlintegration.schema.SchemaTable;
 import io.corrlang.gqlintegration.schema.StubWiring;
 import io.corrlang.gqlintegration.caller.IntrospectionQuery;
+import io.corrlang.gqlintegration.caller.UpstreamConnectionPool;
 import io.corrlang.gqlintegration.queries.GraphQLQueryDelegator;
 import io.corrlang.gqlintegration.queries.GraphQLQueryHandler;
 import no.hvl.past.graph.GraphError;
@@ -32,21 +34,29 @@ import java.io.OutputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.*;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 public class GraphQLEndpoint extends Sys.Impl {
 
     // TODO This is redundant, since it should be covered by
-    private final Map<Name, FieldMult> fieldMults;
+    private final SchemaTable schemaTable;
+    // fields per owner type and display name, the optionals are created once such that lookups do not allocate
+    private final Map<Name, Map<String, Optional<Triple>>> fieldIndex;
     // TODO TechSpace Handler refactoring: probably to be moved out now
     private GraphQLQueryHandler queryHandler;
 
+    private UpstreamConnectionPool connectionPool;
+
     private final ObjectMapper objectMapper;
     private final JsonFactory jsonFactory;
 
     // TODO should be subsumed by containers now, however it is proably good to know the name of the query type
     private EntryPointType queries;
     private EntryPointType mutations;
+    // queries first, then mutations
+    private final List<MessageType> allMessages;
+    private final Map<String, Optional<MessageType>> messagesByDisplayName;
 
 
     public GraphQLEndpoint(
@@ -64,10 +74,33 @@ public class GraphQLEndpoint extends Sys.Impl {
         this.mutations = mutations;
         this.objectMapper = objectMapper;
         this.jsonFactory = jsonFactory;
-        this.fieldMults = new HashMap<>();
-        for (FieldMult m : multiplicities) {
-            fieldMults.put(m.getElementName(), m);
+        this.schemaTable = SchemaTable.compile(
+                schema.carrier().elements().collect(Collectors.toList()),
+                multiplicities,
+                super::displayName,
+                super::isSimpleTypeNode);
+        this.fieldIndex = createFieldIndex();
+        this.queries.index(this::displayName);
+        this.mutations.index(this::displayName);
+        List<MessageType> all = new ArrayList<>(queries.getFields());
+        all.addAll(mutations.getFields());
+        this.allMessages = Collections.unmodifiableList(all);
+        Map<String, Optional<MessageType>> byDisplayName = new HashMap<>();
+        for (MessageType message : allMessages) {
+            byDisplayName.putIfAbsent(displayName(message.typeName()), Optional.of(message));
         }
+        this.messagesByDisplayName = Collections.unmodifiableMap(byDisplayName);
+    }
+
+    private Map<Name, Map<String, Optional<Triple>>> createFieldIndex() {
+        Map<Name, Map<String, Optional<Triple>>> result = new HashMap<>();
+        schema().carrier().edges().forEach(edge -> result
+                .computeIfAbsent(edge.getSource(), owner -> new HashMap<>())
+                .putIfAbsent(displayName(edge.getLabel()), Optional.of(edge)));
+        for (Map.Entry<Name, Map<String, Optional<Triple>>> entry : result.entrySet()) {
+            entry.setValue(Collections.unmodifiableMap(entry.getValue()));
+        }
+        return Collections.unmodifiableMap(result);
     }
 
     @Override
@@ -76,32 +109,61 @@ public class GraphQLEndpoint extends Sys.Impl {
     }
 
     public Optional<Triple> lookupField(Name owner, String fieldNameAsString) {
-        return schema().carrier().outgoing(owner).filter(t -> displayName(t.getLabel()).equals(fieldNameAsString)).findFirst();
+        Map<String, Optional<Triple>> fields = fieldIndex.get(owner);
+        if (fields == null) {
+            return Optional.empty();
+        }
+        return fields.getOrDefault(fieldNameAsString, Optional.empty());
     }
 
     @Override
     public boolean hasTargetMultiplicity(Triple edge, int lowerBound, int upperBound) {
-        if (upperBound == 1 && lowerBound == 1) {
-            return this.fieldMults.get(edge.getLabel()).isMandatory() && !this.fieldMults.get(edge.getLabel()).isListValued();
+        int field = schemaTable.fieldId(edge.getLabel());
+        if (field >= 0 && schemaTable.hasMultiplicity(field)) {
+            if (upperBound == 1 && lowerBound == 1) {
+                return schemaTable.isMandatory(field) && !schemaTable.isListValued(field);
+            }
+            if (lowerBound == 1) {
+                return schemaTable.isMandatory(field);
+            }
+            if (upperBound == 1) {
+                return !schemaTable.isListValued(field);
+            }
+            if (upperBound < 0 || upperBound > 1) {
+                return schemaTable.isListValued(field);
+            }
         }
-        if (lowerBound == 1) {
-            return this.fieldMults.get(edge.getLabel()).isMandatory();
+        return super.hasTargetMultiplicity(edge,lowerBound, upperBound);
+    }
+
+    @Override
+    public boolean isSimpleTypeNode(Name typeName) {
+        if (schemaTable == null) { // still being constructed
+            return super.isSimpleTypeNode(typeName);
         }
-        if (upperBound == 1) {
-            return !this.fieldMults.get(edge.getLabel()).isListValued();
+        int type = schemaTable.typeId(typeName);
+        return type >= 0 ? schemaTable.isSimpleType(type) : super.isSimpleTypeNode(typeName);
+    }
+
+    @Override
+    public String displayName(Name name) {
+        if (schemaTable == null) { // still being constructed
+            return super.displayName(name);
         }
-        if (upperBound < 0 || upperBound > 1) {
-            return this.fieldMults.get(edge.getLabel()).isListValued();
+        int field = schemaTable.fieldId(name);
+        if (field >= 0) {
+            return schemaTable.fieldDisplayName(field);
         }
-        return super.hasTargetMultiplicity(edge,lowerBound, upperBound);
+        int type = schemaTable.typeId(name);
+        return type >= 0 ? schemaTable.typeDisplayName(type) : super.displayName(name);
     }
 
     public Optional<MessageType> getQueryMessage(String operationName) {
-        return this.queries.getFields().stream().filter(qm -> this.displayName(qm.typeName()).equals(operationName)).findFirst();
+        return this.queries.getMessage(operationName);
     }
 
     public Optional<MessageType> getMutationNMassage(String operationName) {
-        return this.mutations.getFields().stream().filter(mm -> this.displayName(mm.typeName()).equals(operationName)).findFirst();
+        return this.mutations.getMessage(operationName);
     }
 
 
@@ -117,17 +179,21 @@ public class GraphQLEndpoint extends Sys.Impl {
             }
             return Optional.empty();
         }
-        return messages().filter(m -> displayName(m.typeName()).equals(name)).findFirst();
+        return messagesByDisplayName.getOrDefault(name, Optional.empty());
     }
 
     @Override
     public Stream<MessageType> messages() {
-        return Stream.concat(this.queries.getFields().stream(), this.mutations.getFields().stream());
+        return allMessages.stream();
     }
 
     @Override
     public boolean isCollectionValued(Triple edge) {
-        return this.fieldMults.get(edge.getLabel()).isListValued();
+        int field = schemaTable.fieldId(edge.getLabel());
+        if (field >= 0 && schemaTable.hasMultiplicity(field)) {
+            return schemaTable.isListValued(field);
+        }
+        return super.isCollectionValued(edge);
     }
 
     @Override
@@ -169,7 +235,7 @@ public class GraphQLEndpoint extends Sys.Impl {
 
     public GraphQLQueryHandler getOrCreateQueryHandler(ObjectMapper objectMapper, JsonFactory jsonFactory) {
         if (queryHandler == null) {
-            queryHandler = new GraphQLQueryDelegator(this);
+            queryHandler = new GraphQLQueryDelegator(this, connectionPool);
         }
         return queryHandler;
     }
@@ -188,6 +254,16 @@ public class GraphQLEndpoint extends Sys.Impl {
             GraphQLSchemaReader reader,
             ObjectMapper objectMapper,
             JsonFactory jsonFactory) throws URISyntaxException, GraphError, IOException, UnsupportedFeatureException {
+        return createFromUrl(url, name, reader, objectMapper, jsonFactory, null);
+    }
+
+    public static GraphQLEndpoint createFromUrl(
+            String url,
+            Name name,
+            GraphQLSchemaReader reader,
+            ObjectMapper objectMapper,
+            JsonFactory jsonFactory,
+            UpstreamConnectionPool connectionPool) throws URISyntaxException, GraphError, IOException, UnsupportedFeatureException {
         Sketch sketch;
         if (url.startsWith("file") || url.startsWith(".")) {
             // local file
@@ -196,12 +272,33 @@ public class GraphQLEndpoint extends Sys.Impl {
             GraphQLSchema schema = new SchemaGenerator().makeExecutableSchema(registry, StubWiring.createWiring(registry));
             return reader.convert(url, name, schema, objectMapper, jsonFactory);
         } else {
-            // introspection query
-            GraphQLSchema schema = new IntrospectionQuery().getGraphQLSchema(url);
-            return reader.convert(url, name, schema, objectMapper, jsonFactory);
+            // introspection query, without a pool of the runtime on a temporary pool that is drained afterwards
+            GraphQLSchema schema = connectionPool == null
+                    ? new IntrospectionQuery().getGraphQLSchema(url)
+                    : new IntrospectionQuery().getGraphQLSchema(connectionPool);
+            GraphQLEndpoint endpoint = reader.convert(url, name, schema, objectMapper, jsonFactory);
+            endpoint.setConnectionPool(connectionPool);
+            return endpoint;
         }
     }
 
+    /**
+     * Creates the endpoint from the result of an introspection query, e.g. one that has been stored in a snapshot.
+     */
+    public static GraphQLEndpoint createFromIntrospection(
+            String url,
+            Name name,
+            GraphQLSchemaReader reader,
+            Map<String, Object> introspectionResult,
+            ObjectMapper objectMapper,
+            JsonFactory jsonFactory,
+            UpstreamConnectionPool connectionPool) throws GraphError, UnsupportedFeatureException {
+        GraphQLSchema schema = IntrospectionQuery.toGraphQLSchema(introspectionResult);
+        GraphQLEndpoint endpoint = reader.convert(url, name, schema, objectMapper, jsonFactory);
+        endpoint.setConnectionPool(connectionPool);
+        return endpoint;
+    }
+
     public GraphMorphism parseQueryOrInstance(InputStream inputStream) throws IOException, ProcessingException {
         return getOrCreateQueryHandler(objectMapper,jsonFactory).deserialize(inputStream);
     }
@@ -218,6 +315,10 @@ public class GraphQLEndpoint extends Sys.Impl {
     }
 
 
+    public void setConnectionPool(UpstreamConnectionPool connectionPool) {
+        this.connectionPool = connectionPool;
+    }
+
     public void setQueryHandler(GraphQLQueryHandler handler) {
         this.queryHandler = handler;
     }
@@ -0,0 +1,370 @@
+package io.corrlang.gqlintegration;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.corrlang.domain.ComprSys;
+import io.corrlang.gqlintegration.caller.SchemaSnapshotStore;
+import io.corrlang.gqlintegration.caller.UpstreamConnectionPool;
+import io.corrlang.gqlintegration.queries.GraphQLQueryDivider;
+import io.corrlang.gqlintegration.queries.GraphQLQueryHandler;
+import no.hvl.past.di.PropertyHolder;
+
+import java.io.File;
+import java.lang.reflect.Method;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Holds the resources that are shared by all GraphQL adapters of one plugin instance,
+ * i.e. the executor that is used to dispatch the local queries of a federated request
+ * and the connection pools towards the upstream endpoints.
+ * Configured via the properties given in the {@link PropertyHolder}.
+ */
+public class GraphQLRuntime {
+
+    /**
+     * How the local queries of a federated request are executed: 'sequential' (default), 'parallel'
+     * or 'virtual', where every upstream call and every asynchronously handled request runs on its own virtual thread.
+     * 'virtual' needs a JVM with virtual threads (21 or later), the runtime cannot be created otherwise.
+     */
+    public static final String EXECUTION_MODE = "graphql.execution.mode";
+
+    /**
+     * Number of threads used in 'parallel' mode (default four per available processor).
+     */
+    public static final String EXECUTION_THREADS = "graphql.execution.threads";
+
+    /**
+     * Whether the results of a federated request are merged while the upstream endpoints are still answering,
+     * i.e. roots are merged as soon as their contributors have answered (default true, only applies to concurrent execution).
+     * Every root is sent to the client as soon as it has been merged, the roots of a failing endpoint are null
+     * and reported in the errors of the response.
+     */
+    public static final String MERGE_INCREMENTAL = "graphql.merge.incremental";
+
+    /**
+     * Maximum number of query plans (split results) that are cached per federation (default 500, 0 disables the cache).
+     * Plans are cached per query shape, i.e. queries that only differ in argument values share a plan.
+     */
+    public static final String PLAN_CACHE_SIZE = "graphql.plan-cache.size";
+
+    /**
+     * Maximum total number of characters (query texts and variables) of the parsed queries that are cached per federation,
+     * 0 disables the cache.
+     */
+    public static final String PARSE_CACHE_WEIGHT = "graphql.parse-cache.weight";
+
+    /**
+     * JSON file with persisted queries that are registered (and prepared) when a federation is set up,
+     * relative paths are resolved against the base directory.
+     */
+    public static final String PERSISTED_QUERIES_MANIFEST = "graphql.persisted-queries.manifest";
+
+    /**
+     * Directory in which the introspection results of upstream endpoints are kept, such that they are
+     * imported from disk on the next start. Relative paths are resolved against the base directory, not set disables snapshots.
+     */
+    public static final String SCHEMA_SNAPSHOT_DIR = "graphql.schema-snapshot.dir";
+
+    /**
+     * Whether a schema that has been imported from a snapshot is checked against the live endpoint in the background (default true).
+     */
+    public static final String SCHEMA_SNAPSHOT_REVALIDATE = "graphql.schema-snapshot.revalidate";
+
+    /**
+     * Maximum number of concurrent connections per upstream endpoint (default 16).
+     * Can be set for a single endpoint by appending its schema name, e.g. 'graphql.pool.max-connections.Sales'.
+     */
+    public static final String POOL_MAX_CONNECTIONS = "graphql.pool.max-connections";
+
+    /**
+     * Seconds after which unused connections to an upstream endpoint are closed (default 60).
+     */
+    public static final String POOL_IDLE_TIMEOUT = "graphql.pool.idle-timeout";
+
+    /**
+     * Seconds after which connecting to an upstream endpoint, waiting for a free connection to it
+     * or waiting for its response headers fails (default 30).
+     */
+    public static final String POOL_REQUEST_TIMEOUT = "graphql.pool.request-timeout";
+
+    /**
+     * Number of connections that are opened ahead when an upstream endpoint is registered (default 1).
+     */
+    public static final String POOL_WARMUP = "graphql.pool.warmup";
+
+    public enum ExecutionMode {
+        SEQUENTIAL,
+        PARALLEL,
+        VIRTUAL
+    }
+
+    private final ExecutionMode mode;
+    private final int threads;
+    private final boolean incrementalMerge;
+    private final long planCacheSize;
+    private final long parseCacheWeight;
+    private final PropertyHolder propertyHolder;
+    private final Map<String, UpstreamConnectionPool> connectionPools = new ConcurrentHashMap<>();
+    // comprehensive systems are compared by identity, a handler references its system, hence it is only held softly
+    // and the system can be collected once its handler has been dropped under memory pressure or by forgetFederation
+    private final Cache<ComprSys, GraphQLQueryDivider> federationHandlers = CacheBuilder.newBuilder().weakKeys().softValues().build();
+    private ExecutorService upstreamExecutor;
+    // requests wait for upstream calls, which in turn wait for the HTTP client, hence they never share an executor
+    private ExecutorService requestExecutor;
+    private ExecutorService httpExecutor;
+    private ScheduledExecutorService evictionScheduler;
+    // separate from the eviction such that a hanging endpoint does not stop it
+    private ExecutorService backgroundExecutor;
+
+    public GraphQLRuntime(PropertyHolder propertyHolder) {
+        this.propertyHolder = propertyHolder;
+        this.mode = ExecutionMode.valueOf(property(propertyHolder, EXECUTION_MODE, ExecutionMode.SEQUENTIAL.name()).trim().toUpperCase());
+        this.threads = Integer.parseInt(property(propertyHolder, EXECUTION_THREADS, String.valueOf(4 * Runtime.getRuntime().availableProcessors())).trim());
+        this.incrementalMerge = Boolean.parseBoolean(property(propertyHolder, MERGE_INCREMENTAL, "true").trim());
+        this.planCacheSize = Long.parseLong(property(propertyHolder, PLAN_CACHE_SIZE, "500").trim());
+        this.parseCacheWeight = Long.parseLong(property(propertyHolder, PARSE_CACHE_WEIGHT, String.valueOf(GraphQLQueryHandler.DEFAULT_PARSE_CACHE_WEIGHT)).trim());
+        if (mode == ExecutionMode.VIRTUAL && virtualThreadFactoryMethod() == null) {
+            // a bounded pool instead would be shared by requests waiting for upstream calls and the calls themselves
+            throw new IllegalStateException("Execution mode 'virtual' needs a JVM with virtual threads (21 or later), use 'parallel' instead!");
+        }
+    }
+
+    public ExecutionMode getMode() {
+        return mode;
+    }
+
+    public boolean isIncrementalMerge() {
+        return incrementalMerge;
+    }
+
+    public long getPlanCacheSize() {
+        return planCacheSize;
+    }
+
+    public long getParseCacheWeight() {
+        return parseCacheWeight;
+    }
+
+    /**
+     * The manifest of persisted queries or null if none is configured.
+     */
+    public File persistedQueriesManifest() {
+        return file(PERSISTED_QUERIES_MANIFEST);
+    }
+
+    /**
+     * The store for schema snapshots or null if none is configured.
+     */
+    public SchemaSnapshotStore schemaSnapshots(ObjectMapper objectMapper) {
+        File directory = file(SCHEMA_SNAPSHOT_DIR);
+        return directory == null ? null : new SchemaSnapshotStore(directory, objectMapper);
+    }
+
+    public boolean isRevalidateSchemaSnapshots() {
+        return Boolean.parseBoolean(property(propertyHolder, SCHEMA_SNAPSHOT_REVALIDATE, "true").trim());
+    }
+
+    /**
+     * Runs the given maintenance task (e.g. revalidating a schema snapshot) on the background thread of this runtime,
+     * which is not the one evicting idle connections.
+     */
+    public synchronized void runInBackground(Runnable task) {
+        if (backgroundExecutor == null) {
+            backgroundExecutor = Executors.newSingleThreadExecutor(daemonThreadFactory("graphql-background-"));
+        }
+        backgroundExecutor.execute(task);
+    }
+
+    private File file(String key) {
+        String path = property(propertyHolder, key, null);
+        if (path == null) {
+            return null;
+        }
+        File file = new File(path.trim());
+        String baseDir = property(propertyHolder, PropertyHolder.BASE_DIR, null);
+        if (!file.isAbsolute() && baseDir != null) {
+            file = new File(baseDir, path.trim());
+        }
+        return file;
+    }
+
+    /**
+     * The executor on which local queries are dispatched concurrently or null if they are to be executed sequentially.
+     */
+    public synchronized Executor upstreamExecutor() {
+        if (mode == ExecutionMode.SEQUENTIAL) {
+            return null;
+        }
+        if (upstreamExecutor == null) {
+            if (mode == ExecutionMode.VIRTUAL) {
+                upstreamExecutor = newVirtualThreadExecutor();
+            } else {
+                upstreamExecutor = newBoundedExecutor();
+            }
+        }
+        return upstreamExecutor;
+    }
+
+    /**
+     * The executor on which whole federated requests (parse, split, execute, merge) are run when they are
+     * handed over asynchronously, null if they are run on the calling thread.
+     */
+    public synchronized Executor requestExecutor() {
+        if (mode != ExecutionMode.VIRTUAL) {
+            return null;
+        }
+        if (requestExecutor == null) {
+            requestExecutor = newVirtualThreadExecutor();
+        }
+        return requestExecutor;
+    }
+
+    /**
+     * The executor of the HTTP clients towards the upstream endpoints or null if they use their own.
+     */
+    private synchronized Executor httpExecutor() {
+        if (mode != ExecutionMode.VIRTUAL) {
+            return null;
+        }
+        if (httpExecutor == null) {
+            httpExecutor = newVirtualThreadExecutor();
+        }
+        return httpExecutor;
+    }
+
+    /**
+     * The handlers of the comprehensive systems that have been queried so far.
+     */
+    public Cache<ComprSys, GraphQLQueryDivider> federationHandlers() {
+        return federationHandlers;
+    }
+
+    /**
+     * Drops the handler of the given comprehensive system, e.g. when the system is not used any longer.
+     */
+    public void forgetFederation(ComprSys comprSys) {
+        federationHandlers.invalidate(comprSys);
+    }
+
+    /**
+     * Starts the background eviction of idle upstream connections.
+     */
+    public synchronized void start() {
+        if (evictionScheduler == null) {
+            evictionScheduler = Executors.newSingleThreadScheduledExecutor(daemonThreadFactory("graphql-maintenance-"));
+            long period = Math.max(1, idleTimeout().getSeconds() / 2);
+            evictionScheduler.scheduleAtFixedRate(
+                    () -> connectionPools.values().forEach(UpstreamConnectionPool::evictIdle),
+                    period,
+                    period,
+                    TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * The connection pool for the endpoint with the given URL, which is created and warmed up on first access.
+     * The endpoint name (may be null) is used to look up endpoint specific pool sizes.
+     */
+    public UpstreamConnectionPool connectionPool(String url, String endpointName) {
+        start();
+        return connectionPools.computeIfAbsent(url, u -> {
+            String defaultMax = property(propertyHolder, POOL_MAX_CONNECTIONS, "16");
+            int maxConnections = Integer.parseInt((endpointName == null ? defaultMax : property(propertyHolder, POOL_MAX_CONNECTIONS + "." + endpointName, defaultMax)).trim());
+            UpstreamConnectionPool pool = new UpstreamConnectionPool(
+                    u,
+                    maxConnections,
+                    idleTimeout(),
+                    Duration.ofSeconds(Long.parseLong(property(propertyHolder, POOL_REQUEST_TIMEOUT, "30").trim())),
+                    httpExecutor());
+            pool.warmUp(Integer.parseInt(property(propertyHolder, POOL_WARMUP, "1").trim()));
+            return pool;
+        });
+    }
+
+    private Duration idleTimeout() {
+        return Duration.ofSeconds(Long.parseLong(property(propertyHolder, POOL_IDLE_TIMEOUT, "60").trim()));
+    }
+
+    private ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) virtualThreadFactoryMethod().invoke(null);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Could not create virtual thread executor!", e);
+        }
+    }
+
+    private static Method virtualThreadFactoryMethod() {
+        // looked up reflectively such that the plugin still runs on JVMs without virtual threads (< 21)
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    private ExecutorService newBoundedExecutor() {
+        return Executors.newFixedThreadPool(Math.max(1, threads), daemonThreadFactory("graphql-upstream-"));
+    }
+
+    public synchronized void shutdown() {
+        if (evictionScheduler != null) {
+            evictionScheduler.shutdownNow();
+            evictionScheduler = null;
+        }
+        if (backgroundExecutor != null) {
+            backgroundExecutor.shutdownNow();
+            backgroundExecutor = null;
+        }
+        federationHandlers.invalidateAll();
+        connectionPools.values().forEach(UpstreamConnectionPool::drain);
+        connectionPools.clear();
+        shutdown(requestExecutor);
+        requestExecutor = null;
+        shutdown(upstreamExecutor);
+        upstreamExecutor = null;
+        shutdown(httpExecutor);
+        httpExecutor = null;
+    }
+
+    private static void shutdown(ExecutorService executor) {
+        if (executor == null) {
+            return;
+        }
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    static String property(PropertyHolder propertyHolder, String key, String defaultValue) {
+        if (propertyHolder == null) {
+            return defaultValue;
+        }
+        String value = propertyHolder.getProperty(key);
+        return value == null || value.trim().isEmpty() ? defaultValue : value;
+    }
+
+    private static ThreadFactory daemonThreadFactory(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -1,6 +1,8 @@
 package io.corrlang.gqlintegration.caller;
 
-import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.JsonNodeFactory;
 import com.google.common.collect.Sets;
@@ -20,8 +22,8 @@ import no.hvl.past.names.Name;
 
 import java.io.*;
 import java.net.HttpURLConnection;
-import java.net.URL;
-import java.util.HashMap;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
 import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Stream;
@@ -29,10 +31,14 @@ import java.util.stream.Stream;
 public class IntrospectionQuery implements QueryTree {
 
     public static final String GRAPHQL_META_INFO_PREFIX = "__";
-    private HttpURLConnection connection;
 
     private static final String JSON_RESULT_CONTAINER_OBJ = "data";
 
+    // shared, the mapper is thread-safe once configured
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final TypeReference<Map<String, Object>> MAP_TYPE = new TypeReference<>() {
+    };
+
     private static final String INTROSPECTION_QUERY = "query IntrospectionQuery {\n" +
             "    __schema {\n" +
             "      queryType { name }\n" +
@@ -154,9 +160,37 @@ public class IntrospectionQuery implements QueryTree {
     }
 
     public GraphQLSchema getGraphQLSchema(String endpoint) throws IOException {
-        final JsonNode result = this.executeQuery(endpoint, INTROSPECTION_QUERY);
-        final ObjectMapper mapper = new ObjectMapper();
-        @SuppressWarnings("unchecked") final Map<String, Object> schemaDefinition = mapper.convertValue(result, HashMap.class);
+        UpstreamConnectionPool connectionPool = new UpstreamConnectionPool(endpoint);
+        try {
+            return getGraphQLSchema(connectionPool);
+        } finally {
+            connectionPool.drain();
+        }
+    }
+
+    public GraphQLSchema getGraphQLSchema(UpstreamConnectionPool connectionPool) throws IOException {
+        return toGraphQLSchema(this.executeQuery(connectionPool, INTROSPECTION_QUERY, IntrospectionQuery::readMap));
+    }
+
+    /**
+     * The raw result (the 'data' part) of the introspection query against the given endpoint,
+     * read directly into the structure that is needed to build the schema.
+     */
+    public Map<String, Object> getIntrospectionResult(UpstreamConnectionPool connectionPool) throws IOException {
+        return this.executeQuery(connectionPool, INTROSPECTION_QUERY, IntrospectionQuery::readMap);
+    }
+
+    /**
+     * Reads the 'data' part of an introspection response directly into the structure that is needed to build the schema.
+     */
+    public static Map<String, Object> readIntrospectionResult(InputStream response) throws IOException {
+        return readData(response, IntrospectionQuery::readMap);
+    }
+
+    /**
+     * Builds the schema from an introspection result, e.g. one that has been fetched earlier.
+     */
+    public static GraphQLSchema toGraphQLSchema(Map<String, Object> schemaDefinition) {
         final Document document = new IntrospectionResultToSchema().createSchemaDefinition(schemaDefinition);
         final SchemaParser parser = new SchemaParser();
         final TypeDefinitionRegistry schema = parser.buildRegistry(document);
@@ -164,65 +198,53 @@ public class IntrospectionQuery implements QueryTree {
         return generator.makeExecutableSchema(schema, StubWiring.createWiring(schema));
     }
 
-    private JsonNode executeQuery(final String endpoint, final String query) throws IOException {
-        this.setupConnection(new URL(endpoint));
-        this.getConnection().connect();
-        BufferedWriter outputWriter = new BufferedWriter(new OutputStreamWriter(this.getConnection().getOutputStream()));
-        outputWriter.write(JsonNodeFactory.instance.objectNode().put("query", query).toString());
-        outputWriter.flush();
-        outputWriter.close();
-        int responseCode = getConnection().getResponseCode();
+    private <T> T executeQuery(final UpstreamConnectionPool connectionPool, final String query, final DataReader<T> dataReader) throws IOException {
+        byte[] request = JsonNodeFactory.instance.objectNode().put("query", query).toString().getBytes(StandardCharsets.UTF_8);
+        HttpResponse<InputStream> response = connectionPool.postAndWait(request, true);
+        int responseCode = response.statusCode();
         switch (responseCode) {
-                    case HttpURLConnection.HTTP_OK:
-
-                    BufferedReader inputReader = new BufferedReader(new InputStreamReader(this.getConnection().getInputStream()));
-                    StringBuilder result = new StringBuilder();
-                    String line;
-                    while ((line = inputReader.readLine()) != null) {
-                        result.append(line);
-                        result.append(System.lineSeparator());
-                    }
-                    inputReader.close();
-                    this.getConnection().disconnect();
-                    final ObjectMapper mapper = new ObjectMapper();
-                    final JsonNode root = mapper.readTree(result.toString());
-                    return root.get(IntrospectionQuery.JSON_RESULT_CONTAINER_OBJ);
-
-                    case HttpURLConnection.HTTP_BAD_REQUEST:
-                    case HttpURLConnection.HTTP_INTERNAL_ERROR:
-
-                    BufferedReader errorReader = new BufferedReader(new InputStreamReader(getConnection().getErrorStream()));
-                    StringBuilder errorResult = new StringBuilder();
-                    String errorLine;
-                    while ((errorLine = errorReader.readLine()) != null) {
-                        errorResult.append(errorLine);
-                        errorResult.append(System.lineSeparator());
-                    }
-                    errorReader.close();
-                    this.getConnection().disconnect();
-                    throw new RuntimeException(errorResult.toString());
+            case HttpURLConnection.HTTP_OK:
+                return readData(UpstreamConnectionPool.body(response), dataReader);
+            case HttpURLConnection.HTTP_BAD_REQUEST:
+            case HttpURLConnection.HTTP_INTERNAL_ERROR:
+                try (InputStream errorStream = UpstreamConnectionPool.body(response)) {
+                    throw new RuntimeException(new String(errorStream.readAllBytes(), StandardCharsets.UTF_8));
+                }
             default:
+                response.body().close();
                 throw new RuntimeException("unexpected HTTP code " + responseCode);
         }
 
     }
 
-    private void setupConnection(final URL url) throws IOException {
-        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-        connection.setRequestMethod("POST");
-        connection.setRequestProperty("Content-Type", "application/json");
-        connection.setRequestProperty("Accept", "application/json");
-        connection.setDoOutput(true);
-        connection.setDoInput(true);
-        this.setConnection(connection);
+    /**
+     * Streams over the response and only materializes its 'data' part, null if there is none.
+     */
+    private static <T> T readData(InputStream response, DataReader<T> dataReader) throws IOException {
+        try (JsonParser parser = MAPPER.getFactory().createParser(response)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Introspection response is not a JSON object!");
+            }
+            T result = null;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken value = parser.nextToken();
+                if (JSON_RESULT_CONTAINER_OBJ.equals(field) && value != JsonToken.VALUE_NULL) {
+                    result = dataReader.read(parser);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            return result;
+        }
     }
 
-    private void setConnection(final HttpURLConnection connection) {
-        this.connection = connection;
+    private static Map<String, Object> readMap(JsonParser parser) throws IOException {
+        return MAPPER.readValue(parser, MAP_TYPE);
     }
 
-    private HttpURLConnection getConnection() {
-        return connection;
+    private interface DataReader<T> {
+        T read(JsonParser parser) throws IOException;
     }
 
     @Override
@@ -0,0 +1,120 @@
+package io.corrlang.gqlintegration.caller;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.hash.Hashing;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Keeps the introspection results of upstream endpoints on disk such that the plugin can start
+ * without contacting them (and even when they are down).
+ * There is one JSON file per endpoint, snapshots written by another format version are ignored.
+ * Introspection results are read and written in the structure that is needed to build the schema, i.e. without a JSON tree.
+ */
+public class SchemaSnapshotStore {
+
+    public static final int FORMAT_VERSION = 1;
+
+    private static final String VERSION_FIELD = "version";
+    private static final String URL_FIELD = "url";
+    private static final String FETCHED_AT_FIELD = "fetchedAt";
+    private static final String INTROSPECTION_FIELD = "introspection";
+    private static final TypeReference<Map<String, Object>> INTROSPECTION_TYPE = new TypeReference<>() {
+    };
+
+    private final Logger logger = LogManager.getLogger(SchemaSnapshotStore.class);
+    private final File directory;
+    private final ObjectMapper objectMapper;
+
+    public SchemaSnapshotStore(File directory, ObjectMapper objectMapper) {
+        this.directory = directory;
+        this.objectMapper = objectMapper;
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * The stored introspection result of the given endpoint, empty if there is none or it cannot be read.
+     */
+    public Optional<Map<String, Object>> load(String url, String endpointName) {
+        File file = snapshotFile(url, endpointName);
+        if (!file.exists()) {
+            return Optional.empty();
+        }
+        try (JsonParser parser = objectMapper.getFactory().createParser(file)) {
+            int version = -1;
+            String snapshotUrl = null;
+            Map<String, Object> introspection = null;
+            if (parser.nextToken() == JsonToken.START_OBJECT) {
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = parser.getCurrentName();
+                    JsonToken value = parser.nextToken();
+                    if (VERSION_FIELD.equals(field) && value == JsonToken.VALUE_NUMBER_INT) {
+                        version = parser.getIntValue();
+                    } else if (URL_FIELD.equals(field) && value == JsonToken.VALUE_STRING) {
+                        snapshotUrl = parser.getText();
+                    } else if (INTROSPECTION_FIELD.equals(field) && value == JsonToken.START_OBJECT) {
+                        introspection = objectMapper.readValue(parser, INTROSPECTION_TYPE);
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+            }
+            if (version != FORMAT_VERSION || !url.equals(snapshotUrl) || introspection == null) {
+                logger.info("Ignoring outdated schema snapshot '" + file + "'");
+                return Optional.empty();
+            }
+            return Optional.of(introspection);
+        } catch (IOException e) {
+            logger.warn("Could not read schema snapshot '" + file + "'", e);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Replaces the snapshot of the given endpoint, readers never see a half written file.
+     */
+    public void store(String url, String endpointName, Map<String, Object> introspectionResult) throws IOException {
+        Files.createDirectories(directory.toPath());
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put(VERSION_FIELD, FORMAT_VERSION);
+        snapshot.put(URL_FIELD, url);
+        snapshot.put(FETCHED_AT_FIELD, System.currentTimeMillis());
+        snapshot.put(INTROSPECTION_FIELD, introspectionResult);
+
+        Path target = snapshotFile(url, endpointName).toPath();
+        Path temp = Files.createTempFile(directory.toPath(), target.getFileName().toString(), ".tmp");
+        try {
+            objectMapper.writeValue(temp.toFile(), snapshot);
+            try {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    File snapshotFile(String url, String endpointName) {
+        String prefix = endpointName == null ? "endpoint" : endpointName.replaceAll("[^A-Za-z0-9_-]", "_");
+        String urlHash = Hashing.sha256().hashString(url, StandardCharsets.UTF_8).toString().substring(0, 16);
+        return new File(directory, prefix + "-" + urlHash + ".json");
+    }
+}
@@ -0,0 +1,384 @@
+package io.corrlang.gqlintegration.caller;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Keep-alive HTTP connections to one GraphQL endpoint.
+ * At most maxConnections requests are in flight at the same time, i.e. an exchange holds its connection
+ * until the response body has been read completely or closed. Further requests wait (without blocking a thread)
+ * in a queue until a connection is given back.
+ * When the pool has not been used for longer than the idle timeout, {@link #evictIdle()} replaces its HTTP client.
+ * From Java 21 on the connections of the old client are closed right away, before that they are closed
+ * once the old client has been garbage collected.
+ * Connecting, waiting for a free connection and waiting for the response headers each fail after the request timeout.
+ */
+public class UpstreamConnectionPool {
+
+    private static final String GZIP = "gzip";
+    private static final byte[] WARMUP_REQUEST = "{\"query\":\"{ __typename }\"}".getBytes(StandardCharsets.UTF_8);
+
+    private final Logger logger = LogManager.getLogger(UpstreamConnectionPool.class);
+
+    private final URI url;
+    private final int maxConnections;
+    private final Duration idleTimeout;
+    private final Duration requestTimeout;
+    private final Executor executor;
+
+    // guards the client, the connection count and the waiting requests, does not block on I/O, hence does not pin virtual threads
+    private final ReentrantLock lock = new ReentrantLock();
+    // requests waiting for a free connection, in arrival order
+    private final Deque<CompletableFuture<HttpClient>> waiting = new ArrayDeque<>();
+    private HttpClient client;
+    private int inFlight;
+    private long lastUsed;
+    private boolean drained;
+
+    public UpstreamConnectionPool(String url) {
+        this(url, 16, Duration.ofSeconds(60), null);
+    }
+
+    public UpstreamConnectionPool(String url, int maxConnections, Duration idleTimeout, Executor executor) {
+        this(url, maxConnections, idleTimeout, Duration.ofSeconds(30), executor);
+    }
+
+    public UpstreamConnectionPool(String url, int maxConnections, Duration idleTimeout, Duration requestTimeout, Executor executor) {
+        this.url = URI.create(url);
+        this.maxConnections = maxConnections;
+        this.idleTimeout = idleTimeout;
+        this.requestTimeout = requestTimeout;
+        this.executor = executor;
+        this.client = newClient();
+        this.lastUsed = System.nanoTime();
+    }
+
+    public URI getUrl() {
+        return url;
+    }
+
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    public Duration getRequestTimeout() {
+        return requestTimeout;
+    }
+
+    /**
+     * Posts the given JSON request. The future completes as soon as the response headers have arrived,
+     * the connection is given back to the pool when the response body is exhausted or closed.
+     * Error responses (other than 2xx) are the exception, their (short) body has been received completely
+     * when the future completes, such that reading it does not block the completing thread.
+     */
+    public CompletableFuture<HttpResponse<InputStream>> post(byte[] jsonRequest) {
+        return post(jsonRequest, false);
+    }
+
+    /**
+     * Like {@link #post(byte[])}, asks the endpoint to compress the response if acceptGzip is set.
+     * Use {@link #body(HttpResponse)} to read such responses.
+     * Never blocks, if all connections are in use the request is sent once one is given back.
+     */
+    public CompletableFuture<HttpResponse<InputStream>> post(byte[] jsonRequest, boolean acceptGzip) {
+        return acquire().thenCompose(current -> send(current, jsonRequest, acceptGzip));
+    }
+
+    /**
+     * Completes with the client to send on as soon as a connection is free, fails after the request timeout.
+     */
+    private CompletableFuture<HttpClient> acquire() {
+        CompletableFuture<HttpClient> result;
+        lock.lock();
+        try {
+            if (drained) {
+                return failed(new IOException("Connection pool for '" + url + "' has been shut down!"));
+            }
+            lastUsed = System.nanoTime();
+            if (inFlight < maxConnections) {
+                inFlight++;
+                return CompletableFuture.completedFuture(client);
+            }
+            result = new CompletableFuture<>();
+            waiting.add(result);
+        } finally {
+            lock.unlock();
+        }
+        CompletableFuture.delayedExecutor(requestTimeout.toNanos(), TimeUnit.NANOSECONDS).execute(() -> {
+            if (result.completeExceptionally(new HttpTimeoutException("No connection to '" + url + "' has become available within " + requestTimeout.toMillis() + " ms!"))) {
+                lock.lock();
+                try {
+                    waiting.remove(result);
+                } finally {
+                    lock.unlock();
+                }
+            }
+        });
+        return result;
+    }
+
+    private CompletableFuture<HttpResponse<InputStream>> send(HttpClient current, byte[] jsonRequest, boolean acceptGzip) {
+        AtomicBoolean released = new AtomicBoolean(false);
+        Runnable release = () -> {
+            if (released.compareAndSet(false, true)) {
+                giveBack();
+            }
+        };
+        HttpRequest.Builder requestBuilder = HttpRequest.newBuilder(url)
+                .timeout(requestTimeout)
+                .header("Content-Type", "application/json")
+                .header("Accept", "application/json");
+        if (acceptGzip) {
+            requestBuilder.header("Accept-Encoding", GZIP);
+        }
+        HttpRequest request = requestBuilder
+                .POST(HttpRequest.BodyPublishers.ofByteArray(jsonRequest))
+                .build();
+        HttpResponse.BodyHandler<InputStream> bodyHandler = info -> (info.statusCode() / 100) == 2
+                ? HttpResponse.BodySubscribers.mapping(HttpResponse.BodySubscribers.ofInputStream(), in -> new ReleasingInputStream(in, release))
+                : HttpResponse.BodySubscribers.mapping(HttpResponse.BodySubscribers.ofByteArray(), bytes -> {
+                    release.run();
+                    return new ByteArrayInputStream(bytes);
+                });
+        CompletableFuture<HttpResponse<InputStream>> response;
+        try {
+            response = current.sendAsync(request, bodyHandler);
+        } catch (RuntimeException e) {
+            release.run();
+            return failed(e);
+        }
+        return response.whenComplete((result, error) -> {
+            if (error != null) {
+                release.run();
+            }
+        });
+    }
+
+    /**
+     * Blocking variant of {@link #post(byte[])}.
+     */
+    public HttpResponse<InputStream> postAndWait(byte[] jsonRequest) throws IOException {
+        return postAndWait(jsonRequest, false);
+    }
+
+    /**
+     * Blocking variant of {@link #post(byte[], boolean)}.
+     */
+    public HttpResponse<InputStream> postAndWait(byte[] jsonRequest, boolean acceptGzip) throws IOException {
+        CompletableFuture<HttpResponse<InputStream>> future = post(jsonRequest, acceptGzip);
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            // nobody is going to read the response, the connection has to be given back nevertheless
+            future.thenAccept(response -> closeQuietly(response.body()));
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause() instanceof CompletionException && e.getCause().getCause() != null ? e.getCause().getCause() : e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * The body of the given response, decompressed while reading if the endpoint has gzipped it.
+     */
+    public static InputStream body(HttpResponse<InputStream> response) throws IOException {
+        boolean gzipped = response.headers().firstValue("Content-Encoding").map(GZIP::equalsIgnoreCase).orElse(false);
+        if (!gzipped) {
+            return response.body();
+        }
+        try {
+            return new GZIPInputStream(response.body());
+        } catch (IOException | RuntimeException e) {
+            // e.g. a broken gzip header, nobody else is going to close the body
+            closeQuietly(response.body());
+            throw e;
+        }
+    }
+
+    /**
+     * Opens the given number of connections ahead of time such that the first requests do not pay the connection setup.
+     */
+    public void warmUp(int connections) {
+        for (int i = 0; i < Math.min(connections, maxConnections); i++) {
+            post(WARMUP_REQUEST).thenAccept(response -> {
+                try (InputStream body = response.body()) {
+                    body.readAllBytes();
+                } catch (IOException e) {
+                    logger.debug("Warm-up of connection to '" + url + "' failed", e);
+                }
+            }).exceptionally(e -> {
+                logger.debug("Warm-up of connection to '" + url + "' failed", e);
+                return null;
+            });
+        }
+    }
+
+    /**
+     * Closes all connections if the pool has not been used for longer than the idle timeout.
+     */
+    public void evictIdle() {
+        HttpClient evicted = null;
+        lock.lock();
+        try {
+            if (!drained && inFlight == 0 && System.nanoTime() - lastUsed > idleTimeout.toNanos()) {
+                evicted = client;
+                client = newClient();
+                lastUsed = System.nanoTime();
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (evicted != null) {
+            logger.debug("Evicting idle connections to '" + url + "'");
+            close(evicted);
+        }
+    }
+
+    /**
+     * Closes all connections, further requests are rejected.
+     */
+    public void drain() {
+        HttpClient toClose;
+        List<CompletableFuture<HttpClient>> rejected;
+        lock.lock();
+        try {
+            drained = true;
+            toClose = client;
+            rejected = new ArrayList<>(waiting);
+            waiting.clear();
+        } finally {
+            lock.unlock();
+        }
+        for (CompletableFuture<HttpClient> request : rejected) {
+            request.completeExceptionally(new IOException("Connection pool for '" + url + "' has been shut down!"));
+        }
+        close(toClose);
+    }
+
+    /**
+     * Hands the connection over to the next waiting request or frees it if there is none.
+     */
+    private void giveBack() {
+        while (true) {
+            CompletableFuture<HttpClient> next;
+            HttpClient current;
+            lock.lock();
+            try {
+                lastUsed = System.nanoTime();
+                next = waiting.poll();
+                if (next == null) {
+                    inFlight--;
+                    return;
+                }
+                current = client;
+            } finally {
+                lock.unlock();
+            }
+            // completed outside of the lock, the request is sent by the completing thread; timed out requests are skipped
+            if (next.complete(current)) {
+                return;
+            }
+        }
+    }
+
+    private HttpClient newClient() {
+        HttpClient.Builder builder = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).connectTimeout(requestTimeout);
+        if (executor != null) {
+            builder.executor(executor);
+        }
+        return builder.build();
+    }
+
+    private void close(HttpClient httpClient) {
+        // HttpClient is only closeable from Java 21 on, before that its connections are closed once it has been garbage collected
+        if (httpClient instanceof AutoCloseable) {
+            try {
+                ((AutoCloseable) httpClient).close();
+            } catch (Exception e) {
+                logger.debug("Could not close connections to '" + url + "'", e);
+            }
+        }
+    }
+
+    /**
+     * Closes the given response body (giving back its connection), errors are ignored.
+     */
+    public static void closeQuietly(InputStream body) {
+        try {
+            body.close();
+        } catch (IOException e) {
+            // the connection is given back in any case
+        }
+    }
+
+    private static <T> CompletableFuture<T> failed(Throwable throwable) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        result.completeExceptionally(throwable);
+        return result;
+    }
+
+    private static class ReleasingInputStream extends FilterInputStream {
+
+        private final Runnable release;
+
+        ReleasingInputStream(InputStream in, Runnable release) {
+            super(in);
+            this.release = release;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int result = super.read();
+            if (result < 0) {
+                release.run();
+            }
+            return result;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int result = super.read(b, off, len);
+            if (result < 0) {
+                release.run();
+            }
+            return result;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                release.run();
+            }
+        }
+    }
+}
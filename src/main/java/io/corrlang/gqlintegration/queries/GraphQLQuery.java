@@ -16,6 +16,7 @@ import no.hvl.past.util.StringUtils;
 
 
 import java.util.*;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -130,21 +131,21 @@ public class GraphQLQuery implements QueryTree {
             return Objects.hash(typing, child);
         }
 
-        Collection<SelectionSet> localize(Node parent, ComprSys comprSys, Sys local) {
+        Collection<SelectionSet> localize(Node parent, ComprSys comprSys, Sys local, Map<Node, QueryCursor> cursors) {
             List<SelectionSet> result = new ArrayList<>();
             comprSys.localNames(local,this.typing.getLabel()).forEach(localName -> {
                 Triple typing = local.schema().carrier().get(localName).get();
                 Node newNode = new Node(local.displayName(typing.getLabel()), typing.getTarget());
                 SelectionSet newSelectionSect = new SelectionSet(typing, parent, newNode, this.isComplex, this.isListValued);
-                QueryCursor.LocalCursor cursor = new QueryCursor.LocalCursor(newSelectionSect, parent.cursor);
-                newNode.cursor = cursor;
+                QueryCursor.LocalCursor cursor = new QueryCursor.LocalCursor(newSelectionSect, cursors.get(parent));
+                cursors.put(newNode, cursor);
 
                 for (SelectionSet ss : this.child.children) {
-                    newNode.children.addAll(ss.localize(newNode, comprSys, local));
+                    newNode.children.addAll(ss.localize(newNode, comprSys, local, cursors));
                 }
 
                 if (!this.isComplex || !newNode.children.isEmpty()) {
-                    ((QueryCursor.ConcatCursor)SelectionSet.this.child.cursor).addLocalCursor(local.url(),cursor);
+                    ((QueryCursor.ConcatCursor) cursors.get(SelectionSet.this.child)).addLocalCursor(local.url(),cursor);
                     for (AbstractArgument arg : this.child.getArguments()) {
                         newNode.arguments.addAll(arg.localize(newNode, comprSys, local));
                     }
@@ -208,8 +209,19 @@ public class GraphQLQuery implements QueryTree {
 
         abstract Collection<AbstractArgument> localize(Node parent, ComprSys comprSys, Sys local);
 
-        abstract String textRepresentation();
+        String textRepresentation() {
+            return textRepresentation(SimpleArgument::textRepresentation);
+        }
+
+        abstract String textRepresentation(ArgumentPrinter printer);
+
+    }
 
+    /**
+     * Prints the values of simple arguments, e.g. as they are or as placeholders.
+     */
+    interface ArgumentPrinter {
+        String print(SimpleArgument argument);
     }
 
     public static class ComplexArgument extends AbstractArgument {
@@ -231,9 +243,9 @@ public class GraphQLQuery implements QueryTree {
         }
 
         @Override
-        String textRepresentation() {
+        String textRepresentation(ArgumentPrinter printer) {
             StringBuilder sb = new StringBuilder();
-            child.print(sb, 0);
+            child.print(sb, 0, printer);
             return sb.toString();
         }
 
@@ -251,18 +263,32 @@ public class GraphQLQuery implements QueryTree {
 
         private final String valueText;
         private final Value value;
+        // the argument of the global query this one has been localized from, the argument itself in a global query
+        private final SimpleArgument origin;
 
 
         public SimpleArgument(Node parent, String label, Triple type, Integer index, String valueText, Value value) {
             super(parent, label, type, index);
             this.valueText = valueText;
             this.value = value;
+            this.origin = this;
         }
 
         SimpleArgument(String name, String valueText, Value value, Triple type, Node parent) {
             this(parent, name, type, null, valueText, value);
         }
 
+        private SimpleArgument(String name, Triple type, Node parent, SimpleArgument origin) {
+            super(parent, name, type, null);
+            this.valueText = origin.valueText;
+            this.value = origin.value;
+            this.origin = origin.origin;
+        }
+
+        SimpleArgument getOrigin() {
+            return origin;
+        }
+
         public Value getValue() {
             return value;
         }
@@ -291,7 +317,7 @@ public class GraphQLQuery implements QueryTree {
         Collection<AbstractArgument> localize(Node parent, ComprSys comprSys, Sys local) {
             List<AbstractArgument> result = new ArrayList<>();
             comprSys.localNames(local, this.getType().getLabel()).forEach(localName -> {
-                result.add(new SimpleArgument(local.displayName(localName), valueText, value, local.schema().carrier().get(localName).get(), parent));
+                result.add(new SimpleArgument(local.displayName(localName), local.schema().carrier().get(localName).get(), parent, this));
             });
             return result;
         }
@@ -302,6 +328,11 @@ public class GraphQLQuery implements QueryTree {
             return "\"" + valueText + "\"";
         }
 
+        @Override
+        String textRepresentation(ArgumentPrinter printer) {
+            return printer.print(this);
+        }
+
         @Override
         public TypedNode child() {
             return new TypedNode.Impl(value,this, Collections.emptyList(), getType().getTarget());
@@ -315,29 +346,28 @@ public class GraphQLQuery implements QueryTree {
         private final List<SelectionSet> children = new ArrayList<>();
         private final List<AbstractArgument> arguments = new ArrayList<>();
         private SelectionSet parent;
-        QueryCursor cursor;
-
-        public Optional<QueryCursor> getCursor() {
-            return Optional.ofNullable(cursor);
-        }
 
-        protected QueryCursor createGlobalCursor(QueryCursor parentCursor, Set<Key> keys, List<Sys> locals) {
+        protected QueryCursor createGlobalCursor(QueryCursor parentCursor, Set<Key> keys, List<Sys> locals, Map<Node, QueryCursor> cursors) {
+            QueryCursor cursor;
             if (keys.stream().anyMatch(k -> k.targetType().equals(type))) {
                 Multimap<String, Key> keysMap = ArrayListMultimap.create();
+                Map<String, Function<Name, String>> displayNames = new HashMap<>();
                 for (Sys local : locals) {
                     keys.stream()
                             .filter(k -> k.targetType().equals(type))
                             .filter(k -> k.requiredProperties().stream().allMatch(t -> local.schema().carrier().contains(t)))
                             .forEach(k -> keysMap.put(local.url(),k));
+                    displayNames.put(local.url(), local::displayName);
                 }
-                this.cursor = new QueryCursor.ConcatMergeCursor(parent, parentCursor, new LinkedHashMap<>(), keysMap);
+                cursor = new QueryCursor.ConcatMergeCursor(parent, parentCursor, new LinkedHashMap<>(), keysMap, displayNames);
             } else {
-                this.cursor = new QueryCursor.ConcatCursor(parent, parentCursor, new LinkedHashMap<>());
+                cursor = new QueryCursor.ConcatCursor(parent, parentCursor, new LinkedHashMap<>());
             }
+            cursors.put(this, cursor);
             for (SelectionSet s : this.children) {
-                s.child.createGlobalCursor(this.cursor, keys, locals);
+                s.child.createGlobalCursor(cursor, keys, locals, cursors);
             }
-            return this.cursor;
+            return cursor;
         }
 
         List<AbstractArgument> getArguments() {
@@ -418,6 +448,10 @@ public class GraphQLQuery implements QueryTree {
         }
 
         public void print(StringBuilder sink, int nestingLevel) {
+            print(sink, nestingLevel, SimpleArgument::textRepresentation);
+        }
+
+        void print(StringBuilder sink, int nestingLevel, ArgumentPrinter printer) {
             sink.append(StringUtils.produceIndentation(nestingLevel));
             sink.append(label);
             sink.append(' ');
@@ -428,7 +462,7 @@ public class GraphQLQuery implements QueryTree {
                     AbstractArgument argument = it.next();
                     sink.append(argument.label);
                     sink.append(" : ");
-                    sink.append(argument.textRepresentation());
+                    sink.append(argument.textRepresentation(printer));
                     if (it.hasNext()) {
                         sink.append(", ");
                     }
@@ -438,7 +472,7 @@ public class GraphQLQuery implements QueryTree {
             if (!children.isEmpty()) {
                 sink.append(" {\n");
                 for (SelectionSet qNode :children) {
-                    qNode.child.print(sink, nestingLevel +1);
+                    qNode.child.print(sink, nestingLevel +1, printer);
                 }
                 sink.append(StringUtils.produceIndentation(nestingLevel));
                 sink.append("}\n");
@@ -478,7 +512,7 @@ public class GraphQLQuery implements QueryTree {
         }
 
         @Override
-        public void print(StringBuilder sink, int nestingLevel) {
+        void print(StringBuilder sink, int nestingLevel, ArgumentPrinter printer) {
             sink.append('{');
             sink.append(' ');
             String lastKey = null;
@@ -501,7 +535,7 @@ public class GraphQLQuery implements QueryTree {
                         inList = true;
                     }
                 }
-                sink.append(current.textRepresentation());
+                sink.append(current.textRepresentation(printer));
                 if (i.hasNext()) {
                     sink.append(", ");
                 } else if (inList) {
@@ -528,23 +562,27 @@ public class GraphQLQuery implements QueryTree {
             this.messageReturnsTyping = messageReturnsTyping;
         }
 
-        public QueryCursor createGlobalCursor(Name comprSchemaName, Set<Key> keys, List<Sys> locals) {
+        QueryCursor.ConcatCursor createGlobalCursor(Name comprSchemaName, Set<Key> keys, List<Sys> locals, Map<Node, QueryCursor> cursors) {
+            QueryCursor.ConcatCursor cursor;
             if (keys.stream().anyMatch(k -> k.targetType().prefixWith(comprSchemaName).equals(messageReturnsTyping.getTarget()))) {
                 Multimap<String, Key> keysMap = ArrayListMultimap.create();
+                Map<String, Function<Name, String>> displayNames = new HashMap<>();
                 for (Sys local : locals) {
                     keys.stream()
                             .filter(k -> k.targetType().prefixWith(comprSchemaName).equals(messageReturnsTyping.getTarget()))
                             .filter(k -> k.sourceSystem().equals(local))
                             .forEach(k -> keysMap.put(local.url(),k));
+                    displayNames.put(local.url(), local::displayName);
                 }
-                this.cursor = new QueryCursor.ConcatMergeCursor(this, new LinkedHashMap<>(), keysMap);
+                cursor = new QueryCursor.ConcatMergeCursor(this, new LinkedHashMap<>(), keysMap, displayNames);
             } else {
-                this.cursor = new QueryCursor.ConcatCursor(this, new LinkedHashMap<>());
+                cursor = new QueryCursor.ConcatCursor(this, new LinkedHashMap<>());
             }
+            cursors.put(this, cursor);
             for (SelectionSet s : this.getChildren()) {
-                s.child.createGlobalCursor(this.cursor, keys, locals);
+                s.child.createGlobalCursor(cursor, keys, locals, cursors);
             }
-            return this.cursor;
+            return cursor;
         }
 
         @Override
@@ -563,17 +601,17 @@ public class GraphQLQuery implements QueryTree {
             return messageReturnsTyping;
         }
 
-        List<GraphQLQuery.QueryRoot> localize(ComprSys comprSys, Sys local) {
+        List<GraphQLQuery.QueryRoot> localize(ComprSys comprSys, Sys local, Map<Node, QueryCursor> cursors) {
             List<GraphQLQuery.QueryRoot> result = new ArrayList<>();
             comprSys.localNames(local,this.messageReturnsTyping.getSource()).forEach(localName -> {
                 QueryRoot e = new QueryRoot(local.displayName(localName), isMutation, local.schema().carrier().get(localName).get());
                 QueryCursor.LocalCursor localCursor = new QueryCursor.LocalCursor(e);
-                e.cursor = localCursor;
+                cursors.put(e, localCursor);
                 for (SelectionSet ss : this.getChildren()) {
-                    e.getChildren().addAll(ss.localize(e, comprSys, local));
+                    e.getChildren().addAll(ss.localize(e, comprSys, local, cursors));
                 }
                 if (!e.getChildren().isEmpty()) {
-                    ((QueryCursor.ConcatCursor) QueryRoot.this.cursor).addLocalCursor(local.url(), localCursor);
+                    ((QueryCursor.ConcatCursor) cursors.get(QueryRoot.this)).addLocalCursor(local.url(), localCursor);
                     for (AbstractArgument arg : this.getArguments()) {
                         e.getArguments().addAll(arg.localize(e, comprSys, local));
                     }
@@ -603,10 +641,10 @@ public class GraphQLQuery implements QueryTree {
         }
     }
 
-    private Optional<GraphQLQuery> localize(ComprSys comprSys, Sys local) {
+    private Optional<GraphQLQuery> localize(ComprSys comprSys, Sys local, Map<Node, QueryCursor> cursors) {
         List<GraphQLQuery.QueryRoot> roots = new ArrayList<>();
         for (GraphQLQuery.QueryRoot r : this.roots) {
-            roots.addAll(r.localize(comprSys, local));
+            roots.addAll(r.localize(comprSys, local, cursors));
         }
         if (roots.isEmpty()) {
             return Optional.empty();
@@ -616,14 +654,26 @@ public class GraphQLQuery implements QueryTree {
     }
 
     public Map<Sys, GraphQLQuery> split(ComprSys comprSys, List<Sys> locals) {
-        LinkedHashMap<Sys, GraphQLQuery> result = new LinkedHashMap<>();
+        return plan(comprSys, locals).getLocalQueries();
+    }
+
+    /**
+     * Splits this query into local queries and creates the cursors that merge their results.
+     * The query itself is not changed, i.e. it can be split and executed by several threads at the same time.
+     */
+    QueryPlan plan(ComprSys comprSys, List<Sys> locals) {
+        // nodes are compared structurally, cursors belong to node instances however
+        Map<Node, QueryCursor> cursors = new IdentityHashMap<>();
+        Set<Key> keys = comprSys.keys().collect(Collectors.toSet());
+        List<QueryCursor.ConcatCursor> rootCursors = new ArrayList<>();
         for (GraphQLQuery.QueryRoot root : this.roots) {
-            root.createGlobalCursor(comprSys.schema().getName(), comprSys.keys().collect(Collectors.toSet()), locals);
+            rootCursors.add(root.createGlobalCursor(comprSys.schema().getName(), keys, locals, cursors));
         }
+        LinkedHashMap<Sys, GraphQLQuery> result = new LinkedHashMap<>();
         for (Sys local : locals) {
-            this.localize(comprSys, local).ifPresent(q ->result.put(local, q));
+            this.localize(comprSys, local, cursors).ifPresent(q ->result.put(local, q));
         }
-        return result;
+        return new QueryPlan(result, Collections.emptyMap(), rootCursors, simpleArguments());
     }
 
     @Override
@@ -633,20 +683,48 @@ public class GraphQLQuery implements QueryTree {
 
     @Override
     public String textualRepresentation() {
+        return textualRepresentation(SimpleArgument::textRepresentation);
+    }
+
+    /**
+     * The text of this query where the values of simple arguments are printed by the given printer.
+     */
+    String textualRepresentation(ArgumentPrinter printer) {
         StringBuilder result = new StringBuilder();
         if (this.roots.stream().anyMatch(q -> !q.isMutation)) {
             result.append("query {\n");
-            this.roots.stream().filter(q -> !q.isMutation).forEach(q -> q.print(result, 1));
+            this.roots.stream().filter(q -> !q.isMutation).forEach(q -> q.print(result, 1, printer));
             result.append("}\n");
         };
         if (this.roots.stream().anyMatch(q -> q.isMutation)) {
             result.append("mutation {\n");
-            this.roots.stream().filter(q -> q.isMutation).forEach(q -> q.print(result, 1));
+            this.roots.stream().filter(q -> q.isMutation).forEach(q -> q.print(result, 1, printer));
             result.append("}\n");
         }
         return result.toString();
     }
 
+    /**
+     * The text of this query without the values of simple arguments, i.e. queries of the same shape have the same text
+     * and can share a plan.
+     */
+    public String shape() {
+        return textualRepresentation(argument -> "$");
+    }
+
+    /**
+     * The simple arguments of this query in the order they appear in its text.
+     * Queries of the same {@link #shape()} have their arguments at the same positions.
+     */
+    List<SimpleArgument> simpleArguments() {
+        List<SimpleArgument> result = new ArrayList<>();
+        textualRepresentation(argument -> {
+            result.add(argument);
+            return "";
+        });
+        return result;
+    }
+
     @Override
     public Graph codomain() {
         return endpoint.schema().carrier();
@@ -1,43 +1,80 @@
 package io.corrlang.gqlintegration.queries;
 
 import io.corrlang.gqlintegration.GraphQLEndpoint;
+import io.corrlang.gqlintegration.caller.UpstreamConnectionPool;
+import no.hvl.past.graph.trees.QueryTree;
 import no.hvl.past.util.IOStreamUtils;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.net.HttpURLConnection;
-import java.net.URL;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 public class GraphQLQueryDelegator extends GraphQLQueryHandler {
 
     private final String url;
+    // owned by the GraphQLRuntime, null if the endpoint has not been registered with one (e.g. a schema file)
+    private final UpstreamConnectionPool connectionPool;
 
     public GraphQLQueryDelegator(GraphQLEndpoint system) {
+        this(system, null);
+    }
+
+    public GraphQLQueryDelegator(GraphQLEndpoint system, UpstreamConnectionPool connectionPool) {
         super(system);
         this.url = system.url();
+        this.connectionPool = connectionPool;
     }
 
     @Override
-    public void handle(InputStream i, OutputStream o) throws IOException {
-        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
-        connection.setRequestMethod("POST");
-        connection.setRequestProperty("Content-Type", "application/json");
-        connection.setRequestProperty("Accept", "application/json");
-        connection.setDoOutput(true);
-        connection.setDoInput(true);
-        connection.connect();
-        IOStreamUtils.copyOver(i, connection.getOutputStream());
-        connection.getOutputStream().close();
-        int responseCode = connection.getResponseCode();
+    public void handle(InputStream i, OutputStream o) throws Exception {
+        try (InputStream result = GraphQLQueryDivider.await(handleAsync(i.readAllBytes()))) {
+            IOStreamUtils.copyOver(result, o);
+        }
+    }
+
+    /**
+     * Sends the given query to the upstream endpoint without blocking.
+     * The future completes with the response body as soon as the response headers have arrived.
+     */
+    public CompletableFuture<InputStream> resolveAsync(QueryTree query) {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try {
+            serialize(query, bos);
+        } catch (IOException e) {
+            CompletableFuture<InputStream> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            return failed;
+        }
+        return handleAsync(bos.toByteArray());
+    }
+
+    public CompletableFuture<InputStream> handleAsync(byte[] request) {
+        if (connectionPool == null) {
+            CompletableFuture<InputStream> failed = new CompletableFuture<>();
+            failed.completeExceptionally(new IOException("Endpoint '" + url + "' has no connection pool, it has not been imported from a URL!"));
+            return failed;
+        }
+        return connectionPool.post(request).thenApply(this::checkResponse);
+    }
+
+    // error bodies are in memory already (see UpstreamConnectionPool.post), hence this does not block
+    private InputStream checkResponse(HttpResponse<InputStream> response) {
+        int responseCode = response.statusCode();
         if ((responseCode / 100) == 2) {
-            IOStreamUtils.copyOver(connection.getInputStream(), o);
-            connection.disconnect();
-        } else {
-            String message = IOStreamUtils.readInputStreamAsString(connection.getErrorStream());
-            connection.disconnect();
-            throw new IOException("HTTP error! return code: " + responseCode + ", detail: " + message);
+            return response.body();
+        }
+        String message;
+        try (InputStream errorStream = response.body()) {
+            message = new String(errorStream.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new CompletionException(e);
         }
+        throw new CompletionException(new IOException("HTTP error! return code: " + responseCode + ", detail: " + message));
     }
 
 
@@ -3,25 +3,30 @@ package io.corrlang.gqlintegration.queries;
 import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonGenerationException;
 import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 import graphql.ExecutionInput;
 import graphql.ExecutionResult;
 import graphql.GraphQL;
 import graphql.schema.GraphQLSchema;
-import graphql.schema.idl.RuntimeWiring;
-import graphql.schema.idl.SchemaGenerator;
-import graphql.schema.idl.SchemaParser;
-import graphql.schema.idl.TypeDefinitionRegistry;
 import io.corrlang.domain.ComprSys;
 import io.corrlang.domain.MessageType;
 import io.corrlang.domain.QueryHandler;
 import io.corrlang.domain.Sys;
 import io.corrlang.gqlintegration.GraphQLEndpoint;
+import io.corrlang.gqlintegration.caller.UpstreamConnectionPool;
 import io.corrlang.gqlintegration.schema.EntryPointType;
 import io.corrlang.gqlintegration.schema.GraphQLSchemaWriter;
-import io.corrlang.gqlintegration.schema.StubWiring;
 import io.corrlang.gqlintegration.caller.IntrospectionQuery;
+import no.hvl.past.graph.Sketch;
 import no.hvl.past.graph.trees.*;
 import io.corrlang.domain.keys.KeyNotEvaluated;
 import no.hvl.past.names.Name;
@@ -33,6 +38,15 @@ import org.apache.logging.log4j.Logger;
 import java.io.*;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
 
 
 // TODO this functionality now appears so generic that it can be moved into the core framework
@@ -322,24 +336,132 @@ public class GraphQLQueryDivider extends GraphQLQueryHandler {
 
     // TODO the System.out println must be replaced with logger output and should be configurable from the outside
 
+    public static final int DEFAULT_PLAN_CACHE_SIZE = 500;
+
+    private static final int INTROSPECTION_CACHE_SIZE = 32;
+
     private ComprSys comprSys;
+    // the schema this handler has been built for
+    private final Sketch schema;
     private Map<Sys, QueryHandler> localHandlers;
     private GraphQL javaGraphQLEngine;
+    // null means that local queries are executed one after another
+    private Executor executor;
+    // null means that requests are processed on the calling thread
+    private Executor requestExecutor;
+    // whether roots are merged as soon as their endpoints have answered, only applies to concurrent execution
+    private boolean incrementalMerge = true;
+    // split results per query shape (text without argument values), null means that every query is split anew
+    private Cache<String, QueryPlan> planCache;
+    // serialized introspection results per (normalized) query text and operation name
+    private final Cache<String, IntrospectionResponse> introspectionResponses = CacheBuilder.newBuilder().maximumSize(INTROSPECTION_CACHE_SIZE).build();
+    private final AtomicLong queryCount = new AtomicLong();
+    private final AtomicLong fastPathCount = new AtomicLong();
 
     public GraphQLQueryDivider(
             ComprSys comprSys,
             Map<Sys, QueryHandler> localHandlers,
             GraphQL javaGraphQLEngine,
             GraphQLEndpoint endpoint) {
+        this(comprSys, localHandlers, javaGraphQLEngine, endpoint, null);
+    }
+
+    public GraphQLQueryDivider(
+            ComprSys comprSys,
+            Map<Sys, QueryHandler> localHandlers,
+            GraphQL javaGraphQLEngine,
+            GraphQLEndpoint endpoint,
+            Executor executor) {
         super(endpoint);
         this.comprSys = comprSys;
+        this.schema = comprSys.schema();
         this.localHandlers = localHandlers;
         this.javaGraphQLEngine = javaGraphQLEngine;
+        this.executor = executor;
+        setPlanCacheSize(DEFAULT_PLAN_CACHE_SIZE);
+    }
+
+    /**
+     * Whether the schema of the comprehensive system is still the one this handler has been built for.
+     */
+    public boolean isUpToDate() {
+        return schema == comprSys.schema();
     }
 
+    public void setExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    public void setRequestExecutor(Executor requestExecutor) {
+        this.requestExecutor = requestExecutor;
+    }
+
+    public void setIncrementalMerge(boolean incrementalMerge) {
+        this.incrementalMerge = incrementalMerge;
+    }
+
+    /**
+     * Bounds the number of cached query plans, least recently used plans are evicted first, 0 disables the cache.
+     */
+    public void setPlanCacheSize(long maximumSize) {
+        this.planCache = maximumSize > 0 ? CacheBuilder.newBuilder().maximumSize(maximumSize).recordStats().build() : null;
+    }
+
+    /**
+     * Hit and miss counts of the query plan cache.
+     */
+    public CacheStats getPlanCacheStats() {
+        return planCache == null ? new CacheStats(0, 0, 0, 0, 0, 0) : planCache.stats();
+    }
+
+
+    /**
+     * Number of federated queries (not counting introspection) this handler has answered.
+     */
+    public long getQueryCount() {
+        return queryCount.get();
+    }
+
+    /**
+     * Number of federated queries that have been answered by a single endpoint, whose response has only been
+     * forwarded with renamed roots instead of being merged.
+     */
+    public long getFastPathCount() {
+        return fastPathCount.get();
+    }
 
     @Override
     public void handle(InputStream i, OutputStream o) throws Exception {
+        // the caller waits for the response anyway, handing the request to another thread would only add a hop
+        process(i, o);
+    }
+
+    /**
+     * Processes the request on the request executor (e.g. a virtual thread) without blocking the calling thread,
+     * the future completes once the response has been written completely. Runs on the calling thread if there is no request executor.
+     */
+    public CompletableFuture<Void> handleAsync(InputStream i, OutputStream o) {
+        Runnable task = () -> {
+            try {
+                process(i, o);
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        };
+        if (requestExecutor == null) {
+            try {
+                task.run();
+                return CompletableFuture.completedFuture(null);
+            } catch (CompletionException e) {
+                CompletableFuture<Void> failed = new CompletableFuture<>();
+                failed.completeExceptionally(e.getCause());
+                return failed;
+            }
+        }
+        return CompletableFuture.runAsync(task, requestExecutor);
+    }
+
+    private void process(InputStream i, OutputStream o) throws Exception {
         try {
             LocalDateTime parseStart = LocalDateTime.now();
             TypedTree typedTree = deserialize(i);
@@ -353,9 +475,20 @@ public class GraphQLQueryDivider extends GraphQLQueryHandler {
                 if (logger.isDebugEnabled()) {
                     logger.debug("Handling the following query now: \n\n" +globalQuery.textualRepresentation());
                 }
-                Map<Sys, GraphQLQuery> localQueries = split(globalQuery);
-                Map<Sys, InputStream> localQueryResults = executeQueries(localQueries);
-                merge(localQueryResults, globalQuery, o);
+                QueryPlan plan = plan(globalQuery);
+                queryCount.incrementAndGet();
+                Sys forwardTarget = plan.getForwardTarget();
+                if (forwardTarget != null && localHandlers.containsKey(forwardTarget)) {
+                    fastPathCount.incrementAndGet();
+                    try (InputStream response = execute(forwardTarget, plan)) {
+                        forward(response, plan, o);
+                    }
+                } else if (executor != null && incrementalMerge) {
+                    executeAndMergeIncrementally(plan, o);
+                } else {
+                    Map<Sys, InputStream> localQueryResults = executeQueries(plan);
+                    merge(localQueryResults, plan, o);
+                }
             } else {
                 throw new IOException("Cannot handle this query!");
             }
@@ -365,61 +498,99 @@ public class GraphQLQueryDivider extends GraphQLQueryHandler {
     }
 
     public void handleIntrospectionQuery(IntrospectionQuery query, OutputStream os) throws IOException {
+        os.write(introspectionResponse(query, false));
+    }
+
+    /**
+     * The serialized response to the given introspection query (optionally gzipped).
+     * The schema does not change during the lifetime of a divider, hence responses are computed once per query text
+     * and operation name and afterwards only copied.
+     */
+    public byte[] introspectionResponse(IntrospectionQuery query, boolean gzipped) throws IOException {
+        String key = query.getQuery().trim().replaceAll("\\s+", " ") + '\n' + query.getOperationName().orElse("");
+        try {
+            IntrospectionResponse response = introspectionResponses.get(key, () -> new IntrospectionResponse(executeIntrospectionQuery(query)));
+            return gzipped ? response.gzipped() : response.plain;
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * Computes the responses to the introspection queries that are usually sent by tools ahead of time.
+     */
+    public void precomputeIntrospection() throws IOException {
+        introspectionResponse(new IntrospectionQuery(), false);
+        introspectionResponse(new IntrospectionQuery(graphql.introspection.IntrospectionQuery.INTROSPECTION_QUERY, "IntrospectionQuery"), false);
+    }
+
+    private byte[] executeIntrospectionQuery(IntrospectionQuery query) throws IOException {
+        ExecutionResult executionResult;
         if (query.getOperationName().isPresent()) {
             ExecutionInput e = new ExecutionInput.Builder()
                     .query(query.getQuery())
                     .operationName(query.getOperationName().get())
                     //.variables(query.getVariables().get())
                     .build();
-            ExecutionResult execute = javaGraphQLEngine.execute(e);
-            Map<String, Object> spec = execute.toSpecification();
-            getObjectMapper().writeValue(os, spec);
+            executionResult = javaGraphQLEngine.execute(e);
         } else {
-            ExecutionResult executionResult = javaGraphQLEngine.execute(query.getQuery());
-            Map<String, Object> spec = executionResult.toSpecification();
-            getObjectMapper().writeValue(os, spec);
+            executionResult = javaGraphQLEngine.execute(query.getQuery());
+        }
+        Map<String, Object> spec = executionResult.toSpecification();
+        return getObjectMapper().writeValueAsBytes(spec);
+    }
+
+    private static final class IntrospectionResponse {
+
+        private final byte[] plain;
+        private volatile byte[] gzipped;
+
+        private IntrospectionResponse(byte[] plain) {
+            this.plain = plain;
+        }
+
+        private byte[] gzipped() throws IOException {
+            if (gzipped == null) {
+                ByteArrayOutputStream bos = new ByteArrayOutputStream(plain.length / 4);
+                try (GZIPOutputStream gzip = new GZIPOutputStream(bos)) {
+                    gzip.write(plain);
+                }
+                gzipped = bos.toByteArray();
+            }
+            return gzipped;
         }
     }
 
 
     public void merge(
             Map<Sys, InputStream> localQueryResults,
-            GraphQLQuery originalQuery,
+            QueryPlan plan,
             OutputStream outputStream) throws IOException, KeyNotEvaluated {
-        IOStreamUtils.Wiretap wiretap = new IOStreamUtils.Wiretap(outputStream);
-        JsonGenerator generator = getJsonFactory().createGenerator(wiretap);
-        generator.writeStartObject();
-        generator.writeFieldName("data");
-        generator.writeStartObject();
+        MergeContext context = new MergeContext();
+        JsonGenerator generator = startResponse(outputStream);
 
         LocalDateTime localQRepsParse = LocalDateTime.now();
-        Map<Sys, JsonNode> globalResults = new LinkedHashMap<>();
-        for (Sys ep : localQueryResults.keySet()) {
-            JsonNode jsonNode = getObjectMapper().readTree(localQueryResults.get(ep)).get("data");
-            globalResults.put(ep, jsonNode);
+        Map<String, JsonNode> keyedResults = new LinkedHashMap<>();
+        try {
+            for (Sys ep : localQueryResults.keySet()) {
+                keyedResults.put(ep.url(), ingest(context, plan, ep.url(), localQueryResults.get(ep), plan.getRootCursors()));
+            }
+        } finally {
+            // the responses that have not been ingested still hold their connections
+            localQueryResults.values().forEach(UpstreamConnectionPool::closeQuietly);
         }
         LocalDateTime localQRepsParseStop = LocalDateTime.now();
        // System.out.println("Parsing Response from local Query: " + Duration.between(localQRepsParse, localQRepsParseStop).toMillis() + " ms");
 
         LocalDateTime startMerge = LocalDateTime.now();
-        for (GraphQLQuery.QueryRoot queryRoot : originalQuery.getRoots()) {
-            Map<String, JsonNode> paramMap = new LinkedHashMap<>();
-            for (Sys endpoint : globalResults.keySet()) {
-                paramMap.put(endpoint.url(), globalResults.get(endpoint));
-            }
-            QueryCursor.ConcatCursor cursor = (QueryCursor.ConcatCursor) queryRoot.getCursor().get();
-            cursor.addResults(paramMap);
-
-            ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
-            PrintStream printStream = new PrintStream(byteArrayOutputStream);
-            TreeCreator creator = new TreeCreator.JsonGeneratorTreeCreator(generator, printStream);
-            try {
-                cursor.processOne(creator);
-            } catch (JsonGenerationException e) {
-                logger.debug(e);
-                logger.debug(byteArrayOutputStream);
-
+        for (QueryCursor.ConcatCursor cursor : plan.getRootCursors()) {
+            if (cursor instanceof QueryCursor.ConcatMergeCursor) {
+                cursor.addResults(context, contributions(cursor, keyedResults));
             }
+            writeRoot(generator, context, cursor);
         }
         LocalDateTime finishMerge = LocalDateTime.now();
       //  System.out.println("Merging Query Response: " + Duration.between(startMerge, finishMerge).toMillis() + " ms");
@@ -460,7 +631,272 @@ public class GraphQLQueryDivider extends GraphQLQueryHandler {
 //                generator.writeNull();
 //            }
 //        }
+        finishResponse(generator, outputStream);
+    }
+
+    /**
+     * Dispatches the local queries concurrently and merges their results as they arrive,
+     * i.e. every root is merged and sent to the client as soon as all the endpoints contributing to it have answered.
+     * Roots of an endpoint that fails are null and the response ends with an error for each of them,
+     * the roots that have been sent before stay valid (partial data).
+     */
+    private void executeAndMergeIncrementally(QueryPlan plan, OutputStream outputStream) throws Exception {
+        BlockingQueue<Sys> arrivals = new LinkedBlockingQueue<>();
+        Map<Sys, CompletableFuture<InputStream>> pending = new LinkedHashMap<>();
+        for (Sys ep : plan.getLocalQueries().keySet()) {
+            if (localHandlers.containsKey(ep)) {
+                CompletableFuture<InputStream> result = dispatch(ep, plan);
+                pending.put(ep, result);
+                result.whenComplete((data, error) -> arrivals.add(ep));
+            }
+        }
+        try {
+            mergeIncrementally(pending, arrivals, plan, outputStream);
+        } catch (Exception | Error e) {
+            discard(pending.values());
+            throw e;
+        }
+    }
+
+    private void mergeIncrementally(
+            Map<Sys, CompletableFuture<InputStream>> pending,
+            BlockingQueue<Sys> arrivals,
+            QueryPlan plan,
+            OutputStream outputStream) throws Exception {
+        List<QueryCursor.ConcatCursor> roots = plan.getRootCursors();
+        MergeContext context = new MergeContext();
+        JsonGenerator generator = startResponse(outputStream);
+        Set<String> expected = new HashSet<>();
+        for (Sys ep : pending.keySet()) {
+            expected.add(ep.url());
+        }
+        // only the parts of the responses that are merged by keys
+        Map<String, JsonNode> arrived = new LinkedHashMap<>();
+        Map<String, Exception> failed = new LinkedHashMap<>();
+        GraphQueryErrorMessage errors = new GraphQueryErrorMessage();
+        int next = 0;
+        int outstanding = pending.size();
+        while (next < roots.size()) {
+            // roots are written in query order, hence a root has to wait for the roots before it
+            QueryCursor.ConcatCursor cursor = roots.get(next);
+            if (hasAllContributions(cursor, expected, arrived.keySet(), failed.keySet())) {
+                String failedContributor = failedContributor(cursor, failed.keySet());
+                if (failedContributor != null) {
+                    generator.writeFieldName(cursor.getQueryNode().field());
+                    generator.writeNull();
+                    Stack<String> path = new Stack<>();
+                    path.push(cursor.getQueryNode().field());
+                    errors.addError("Endpoint '" + failedContributor + "' has failed: " + failed.get(failedContributor).getMessage(), -1, -1, path);
+                } else {
+                    if (cursor instanceof QueryCursor.ConcatMergeCursor) {
+                        // merging by keys needs the results of all contributors at once
+                        cursor.addResults(context, contributions(cursor, arrived));
+                    }
+                    writeRoot(generator, context, cursor);
+                }
+                generator.flush();
+                next++;
+            } else if (outstanding > 0) {
+                Sys ep = arrivals.take();
+                outstanding--;
+                try {
+                    // roots that have been written already do not need the response anymore
+                    arrived.put(ep.url(), ingest(context, plan, ep.url(), await(pending.get(ep)), roots.subList(next, roots.size())));
+                } catch (Exception e) {
+                    // the roots that have been sent cannot be taken back, the ones of this endpoint become null
+                    logger.warn("Endpoint '" + ep.url() + "' has failed, answering with partial data", e);
+                    failed.put(ep.url(), e);
+                }
+            } else {
+                throw new IOException("Not all endpoints contributing to root '" + roots.get(next).getQueryNode().field() + "' have been queried!");
+            }
+        }
+        finishResponse(generator, errors, outputStream);
+    }
+
+    private boolean hasAllContributions(QueryCursor.ConcatCursor cursor, Set<String> expected, Set<String> arrived, Set<String> failed) {
+        for (String url : cursor.getLocalCursors().keySet()) {
+            if (expected.contains(url) && !arrived.contains(url) && !failed.contains(url)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String failedContributor(QueryCursor.ConcatCursor cursor, Set<String> failed) {
+        for (String url : cursor.getLocalCursors().keySet()) {
+            if (failed.contains(url)) {
+                return url;
+            }
+        }
+        return null;
+    }
+
+    private Map<String, JsonNode> contributions(QueryCursor.ConcatCursor cursor, Map<String, JsonNode> results) {
+        Map<String, JsonNode> contributions = new LinkedHashMap<>();
+        for (String url : results.keySet()) {
+            if (cursor.getLocalCursors().containsKey(url)) {
+                contributions.put(url, results.get(url));
+            }
+        }
+        return contributions;
+    }
+
+    /**
+     * Walks the response of the given endpoint token by token and feeds the local cursors of the given roots directly,
+     * i.e. there is never a tree of the whole response. The results of roots that pass through are copied (renamed) into
+     * the context. Only the fields that are merged by keys are kept as trees, they are returned in one object.
+     */
+    private ObjectNode ingest(MergeContext context, QueryPlan plan, String url, InputStream response, List<QueryCursor.ConcatCursor> roots) throws IOException {
+        Map<String, List<QueryCursor.LocalCursor>> streamed = new HashMap<>();
+        Map<String, List<QueryCursor.ConcatCursor>> copied = new HashMap<>();
+        Set<String> keyed = new HashSet<>();
+        for (QueryCursor.ConcatCursor root : roots) {
+            QueryCursor.LocalCursor local = root.getLocalCursors().get(url);
+            if (local == null) {
+                continue;
+            }
+            if (root instanceof QueryCursor.ConcatMergeCursor) {
+                keyed.add(local.getQueryNode().field());
+            } else if (plan.getPassthrough(root) != null) {
+                copied.computeIfAbsent(local.getQueryNode().field(), f -> new ArrayList<>()).add(root);
+            } else {
+                streamed.computeIfAbsent(local.getQueryNode().field(), f -> new ArrayList<>()).add(local);
+            }
+        }
+        ObjectNode buffered = getObjectMapper().createObjectNode();
+        Set<String> present = new HashSet<>();
+        try (JsonParser parser = getObjectMapper().getFactory().createParser(response)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Response of '" + url + "' is not a JSON object!");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                boolean isData = "data".equals(parser.getCurrentName());
+                if (parser.nextToken() != JsonToken.START_OBJECT || !isData) {
+                    parser.skipChildren();
+                    continue;
+                }
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = parser.getCurrentName();
+                    parser.nextToken();
+                    List<QueryCursor.LocalCursor> targets = streamed.getOrDefault(field, Collections.emptyList());
+                    List<QueryCursor.ConcatCursor> copies = copied.getOrDefault(field, Collections.emptyList());
+                    int consumers = targets.size() + copies.size() + (keyed.contains(field) ? 1 : 0);
+                    present.add(field);
+                    if (consumers == 0) {
+                        parser.skipChildren();
+                    } else if (consumers == 1 && !targets.isEmpty()) {
+                        targets.get(0).addResult(context, parser);
+                    } else if (consumers == 1 && !copies.isEmpty()) {
+                        copy(context, plan, copies.get(0), parser);
+                    } else {
+                        // the tokens can only be consumed once
+                        buffered.set(field, parser.readValueAsTree());
+                        for (QueryCursor.LocalCursor target : targets) {
+                            target.addResult(context, buffered);
+                        }
+                        for (QueryCursor.ConcatCursor root : copies) {
+                            try (JsonParser treeParser = buffered.get(field).traverse(getObjectMapper())) {
+                                treeParser.nextToken();
+                                copy(context, plan, root, treeParser);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        for (String field : streamed.keySet()) {
+            if (!present.contains(field)) {
+                for (QueryCursor.LocalCursor target : streamed.get(field)) {
+                    target.addMissing(context);
+                }
+            }
+        }
+        return buffered;
+    }
+
+    private void copy(MergeContext context, QueryPlan plan, QueryCursor.ConcatCursor root, JsonParser parser) throws IOException {
+        TokenBuffer result = new TokenBuffer(getObjectMapper(), false);
+        plan.getPassthrough(root).write(parser, result);
+        context.setPassthrough(root, result);
+    }
+
+    /**
+     * Writes the response of the only endpoint of the query, only the roots are renamed.
+     */
+    private void forward(InputStream response, QueryPlan plan, OutputStream outputStream) throws IOException {
+        JsonGenerator generator = startResponse(outputStream);
+        Map<String, Passthrough> roots = plan.getForwardedRoots();
+        Set<String> written = new HashSet<>();
+        try (JsonParser parser = getObjectMapper().getFactory().createParser(response)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Response of '" + plan.getForwardTarget().url() + "' is not a JSON object!");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                boolean isData = "data".equals(parser.getCurrentName());
+                if (parser.nextToken() != JsonToken.START_OBJECT || !isData) {
+                    parser.skipChildren();
+                    continue;
+                }
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = parser.getCurrentName();
+                    Passthrough root = roots.get(field);
+                    parser.nextToken();
+                    if (root == null || !written.add(field)) {
+                        parser.skipChildren();
+                        continue;
+                    }
+                    generator.writeFieldName(root.getField());
+                    root.write(parser, generator);
+                }
+            }
+        }
+        for (String field : roots.keySet()) {
+            if (!written.contains(field)) {
+                roots.get(field).writeMissing(generator);
+            }
+        }
+        finishResponse(generator, outputStream);
+    }
+
+    private JsonGenerator startResponse(OutputStream outputStream) throws IOException {
+        IOStreamUtils.Wiretap wiretap = new IOStreamUtils.Wiretap(outputStream);
+        JsonGenerator generator = getJsonFactory().createGenerator(wiretap);
+        generator.writeStartObject();
+        generator.writeFieldName("data");
+        generator.writeStartObject();
+        return generator;
+    }
+
+    private void writeRoot(JsonGenerator generator, MergeContext context, QueryCursor.ConcatCursor cursor) throws IOException {
+        TokenBuffer passthrough = context.passthrough(cursor);
+        if (passthrough != null) {
+            generator.writeFieldName(cursor.getQueryNode().field());
+            passthrough.serialize(generator);
+            return;
+        }
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        PrintStream printStream = new PrintStream(byteArrayOutputStream);
+        TreeCreator creator = new TreeCreator.JsonGeneratorTreeCreator(generator, printStream);
+        try {
+            cursor.processOne(context, creator);
+        } catch (JsonGenerationException e) {
+            logger.debug(e);
+            logger.debug(byteArrayOutputStream);
+
+        }
+    }
+
+    private void finishResponse(JsonGenerator generator, OutputStream outputStream) throws IOException {
+        finishResponse(generator, null, outputStream);
+    }
+
+    private void finishResponse(JsonGenerator generator, GraphQueryErrorMessage errors, OutputStream outputStream) throws IOException {
         generator.writeEndObject();
+        if (errors != null && !errors.isErrorFree()) {
+            generator.writeFieldName("errors");
+            errors.write(generator);
+        }
         generator.writeEndObject();
         generator.flush();
       //  System.out.println(wiretap.getRecorded());
@@ -469,13 +905,21 @@ public class GraphQLQueryDivider extends GraphQLQueryHandler {
     }
 
 
-    private Map<Sys, InputStream> executeQueries(Map<Sys, GraphQLQuery> localQueries) throws Exception {
+    private Map<Sys, InputStream> executeQueries(QueryPlan plan) throws Exception {
+        if (executor != null) {
+            return executeQueriesConcurrently(plan);
+        }
         LocalDateTime qSendStart = LocalDateTime.now();
         Map<Sys, InputStream> localQueryResults = new LinkedHashMap<>();
-        for (Sys ep : localQueries.keySet()) {
-            if (localHandlers.containsKey(ep)) {
-                localQueryResults.put(ep, localHandlers.get(ep).resolveAsStream(localQueries.get(ep)));
+        try {
+            for (Sys ep : plan.getLocalQueries().keySet()) {
+                if (localHandlers.containsKey(ep)) {
+                    localQueryResults.put(ep, execute(ep, plan));
+                }
             }
+        } catch (Exception | Error e) {
+            localQueryResults.values().forEach(UpstreamConnectionPool::closeQuietly);
+            throw e;
         }
         LocalDateTime qSendEnd = LocalDateTime.now();
       //  System.out.println("Local Query Request/Response: " + Duration.between(qSendStart, qSendEnd).toMillis() + " ms");
@@ -483,6 +927,149 @@ public class GraphQLQueryDivider extends GraphQLQueryHandler {
         return localQueryResults;
     }
 
+    private InputStream execute(Sys ep, QueryPlan plan) throws Exception {
+        QueryHandler handler = localHandlers.get(ep);
+        byte[] request = plan.getLocalRequest(ep);
+        if (handler instanceof GraphQLQueryDelegator && request != null) {
+            return await(((GraphQLQueryDelegator) handler).handleAsync(request));
+        }
+        return handler.resolveAsStream(plan.getLocalQueries().get(ep));
+    }
+
+    private Map<Sys, InputStream> executeQueriesConcurrently(QueryPlan plan) throws Exception {
+        // dispatching all at once, the insertion order of the map keeps the merge result deterministic
+        Map<Sys, CompletableFuture<InputStream>> pending = new LinkedHashMap<>();
+        for (Sys ep : plan.getLocalQueries().keySet()) {
+            if (localHandlers.containsKey(ep)) {
+                pending.put(ep, dispatch(ep, plan));
+            }
+        }
+        Map<Sys, InputStream> localQueryResults = new LinkedHashMap<>();
+        try {
+            for (Sys ep : pending.keySet()) {
+                localQueryResults.put(ep, await(pending.get(ep)));
+            }
+        } catch (Exception | Error e) {
+            discard(pending.values());
+            throw e;
+        }
+        return localQueryResults;
+    }
+
+    private CompletableFuture<InputStream> dispatch(Sys ep, QueryPlan plan) {
+        QueryHandler handler = localHandlers.get(ep);
+        GraphQLQuery localQuery = plan.getLocalQueries().get(ep);
+        if (handler instanceof GraphQLQueryDelegator) {
+            // non-blocking HTTP call, does not occupy a thread while waiting for the upstream endpoint
+            byte[] request = plan.getLocalRequest(ep);
+            return request != null ? ((GraphQLQueryDelegator) handler).handleAsync(request) : ((GraphQLQueryDelegator) handler).resolveAsync(localQuery);
+        }
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return handler.resolveAsStream(localQuery);
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        }, executor);
+    }
+
+    /**
+     * Closes the responses that have arrived or are still going to arrive, cancelling would leave the latter open.
+     */
+    private static void discard(Collection<CompletableFuture<InputStream>> responses) {
+        for (CompletableFuture<InputStream> response : responses) {
+            response.thenAccept(UpstreamConnectionPool::closeQuietly);
+        }
+    }
+
+    static <T> T await(Future<T> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof CompletionException && cause.getCause() != null) {
+                cause = cause.getCause();
+            }
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw e;
+        }
+    }
+
+
+    @Override
+    protected void prepared(GraphQLQuery query) {
+        try {
+            plan(query);
+        } catch (IOException e) {
+            logger.debug("Could not plan persisted query", e);
+        }
+    }
+
+    /**
+     * Looks up the plan for queries of the same shape (i.e. text without argument values) or splits the given query.
+     * If the argument values differ from the ones of the cached plan, only its local requests are printed anew.
+     */
+    public QueryPlan plan(GraphQLQuery globalQuery) throws IOException {
+        if (planCache == null) {
+            return createPlan(globalQuery);
+        }
+        QueryPlan plan;
+        try {
+            plan = planCache.get(globalQuery.shape(), () -> createPlan(globalQuery));
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+        List<GraphQLQuery.SimpleArgument> arguments = globalQuery.simpleArguments();
+        if (plan.isBoundTo(arguments)) {
+            return plan;
+        }
+        if (!plan.isBindable() || plan.getParameters().size() != arguments.size()) {
+            // other handlers get the local queries as trees, which carry the values of the cached plan
+            return createPlan(globalQuery);
+        }
+        return bind(plan, arguments);
+    }
+
+    /**
+     * Prints the local requests of the given plan with the values of the given arguments.
+     */
+    private QueryPlan bind(QueryPlan plan, List<GraphQLQuery.SimpleArgument> arguments) throws IOException {
+        Map<GraphQLQuery.SimpleArgument, GraphQLQuery.SimpleArgument> values = new IdentityHashMap<>();
+        List<GraphQLQuery.SimpleArgument> parameters = plan.getParameters();
+        for (int i = 0; i < parameters.size(); i++) {
+            values.put(parameters.get(i), arguments.get(i));
+        }
+        Map<Sys, byte[]> localRequests = new LinkedHashMap<>();
+        for (Sys ep : plan.getLocalQueries().keySet()) {
+            String text = plan.getLocalQueries().get(ep).textualRepresentation(argument -> values.get(argument.getOrigin()).textRepresentation());
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            ((GraphQLQueryDelegator) localHandlers.get(ep)).serializeQuery(text, bos);
+            localRequests.put(ep, bos.toByteArray());
+        }
+        return plan.bind(arguments, localRequests);
+    }
+
+    private QueryPlan createPlan(GraphQLQuery globalQuery) throws IOException {
+        QueryPlan plan = globalQuery.plan(comprSys, new ArrayList<>(this.localHandlers.keySet()));
+        Map<Sys, GraphQLQuery> localQueries = plan.getLocalQueries();
+        Map<Sys, byte[]> localRequests = new LinkedHashMap<>();
+        for (Sys ep : localQueries.keySet()) {
+            if (localHandlers.get(ep) instanceof GraphQLQueryDelegator) {
+                ByteArrayOutputStream bos = new ByteArrayOutputStream();
+                ((GraphQLQueryDelegator) localHandlers.get(ep)).serialize(localQueries.get(ep), bos);
+                localRequests.put(ep, bos.toByteArray());
+            }
+        }
+        return plan.withLocalRequests(localRequests);
+    }
 
     public Map<Sys, GraphQLQuery> split(GraphQLQuery query) {
         LocalDateTime splitStart = LocalDateTime.now();
@@ -495,24 +1082,24 @@ public class GraphQLQueryDivider extends GraphQLQueryHandler {
 
 
 
-    public static GraphQLQueryHandler create(
+    public static GraphQLQueryDivider create(
             ObjectMapper objectMapper,
             JsonFactory factory,
             ComprSys comprSys,
             LinkedHashMap<Sys, QueryHandler> handlerMap) throws IOException {
-        // writing schema
-        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        return create(objectMapper, factory, comprSys, handlerMap, null);
+    }
+
+    public static GraphQLQueryDivider create(
+            ObjectMapper objectMapper,
+            JsonFactory factory,
+            ComprSys comprSys,
+            LinkedHashMap<Sys, QueryHandler> handlerMap,
+            Executor executor) throws IOException {
+        // building GraphQL engine, directly from the schema model such that no SDL text has to be printed and parsed
         GraphQLSchemaWriter schemaWriter = new GraphQLSchemaWriter(comprSys);
         comprSys.schema().accept(schemaWriter);
-        BufferedWriter bufferedWriter = new BufferedWriter(new OutputStreamWriter(bos));
-        schemaWriter.printToBuffer(bufferedWriter);
-        bufferedWriter.flush();
-        bufferedWriter.close();
-
-        // building GraphQL engine
-        TypeDefinitionRegistry typeReg = new SchemaParser().parse(bos.toString("UTF-8"));
-        RuntimeWiring wiring = StubWiring.createWiring(typeReg);
-        GraphQLSchema executableSchema = new SchemaGenerator().makeExecutableSchema(typeReg, wiring);
+        GraphQLSchema executableSchema = schemaWriter.buildSchema();
         GraphQL graphQL = GraphQL.newGraphQL(executableSchema).build();
 
         EntryPointType queries = new EntryPointType("Query");
@@ -537,6 +1124,8 @@ public class GraphQLQueryDivider extends GraphQLQueryHandler {
                 mutations,
                 objectMapper,
                 factory);
-        return new GraphQLQueryDivider(comprSys, handlerMap, graphQL, endpoint);
+        GraphQLQueryDivider divider = new GraphQLQueryDivider(comprSys, handlerMap, graphQL, endpoint, executor);
+        divider.precomputeIntrospection();
+        return divider;
     }
 }
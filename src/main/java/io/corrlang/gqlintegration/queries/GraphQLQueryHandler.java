@@ -8,6 +8,10 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.JsonNodeFactory;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.hash.Hashing;
 import io.corrlang.domain.MessageArgument;
 import io.corrlang.domain.MessageType;
 import io.corrlang.domain.ProcessingException;
@@ -21,7 +25,9 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 public abstract class GraphQLQueryHandler implements QueryHandler {
 
@@ -31,11 +37,44 @@ public abstract class GraphQLQueryHandler implements QueryHandler {
     private static final String QUERY_OPERATION_FIELD = "operationName";
     private static final String INTROSPECTION_ROOT = "__schema";
     public static final String QUERY_VARIABLES_FIELD = "variables";
+    private static final String EXTENSIONS_FIELD = "extensions";
+    private static final String PERSISTED_QUERY_FIELD = "persistedQuery";
+    private static final String PERSISTED_QUERY_HASH_FIELD = "sha256Hash";
+    private static final String MANIFEST_OPERATIONS_FIELD = "operations";
+    public static final long DEFAULT_PARSE_CACHE_WEIGHT = 4 * 1024 * 1024;
+    public static final long DEFAULT_PERSISTED_QUERIES_SIZE = 10000;
     private final GraphQLEndpoint endpoint;
+    // parsed queries and parse errors, weighed by the length of query text and variables, null means no caching
+    private Cache<ParseKey, ParseResult> parseCache;
+    // persisted queries per sha256 hash: the ones from a manifest are kept, the ones registered by clients may be evicted
+    private final Map<String, String> manifestQueries = new ConcurrentHashMap<>();
+    private final Cache<String, String> registeredQueries = CacheBuilder.newBuilder().maximumSize(DEFAULT_PERSISTED_QUERIES_SIZE).build();
 
     private Logger logger = LogManager.getLogger(getClass());
     protected GraphQLQueryHandler(GraphQLEndpoint endpoint) {
         this.endpoint = endpoint;
+        setParseCacheWeight(DEFAULT_PARSE_CACHE_WEIGHT);
+    }
+
+    /**
+     * Bounds the parsed query cache by the total number of characters (query texts and variables) of its entries,
+     * 0 disables the cache.
+     */
+    public void setParseCacheWeight(long maximumWeight) {
+        this.parseCache = maximumWeight > 0 ?
+                CacheBuilder.newBuilder()
+                        .maximumWeight(maximumWeight)
+                        .weigher((ParseKey key, ParseResult value) -> key.weight())
+                        .recordStats()
+                        .build() :
+                null;
+    }
+
+    /**
+     * Hit and miss counts of the parsed query cache.
+     */
+    public CacheStats getParseCacheStats() {
+        return parseCache == null ? new CacheStats(0, 0, 0, 0, 0, 0) : parseCache.stats();
     }
 
     ObjectMapper getObjectMapper() {
@@ -54,18 +93,25 @@ public abstract class GraphQLQueryHandler implements QueryHandler {
 
     public void serialize(TypedTree instance, OutputStream os) throws IOException {
         if (instance instanceof QueryTree) {
-            JsonGenerator generator = getJsonFactory().createGenerator(os);
-            generator.writeStartObject();
-            generator.writeFieldName(QUERY_FIELD);
-            generator.writeString(((QueryTree) instance).textualRepresentation());
-            generator.writeEndObject();
-            generator.flush();
+            serializeQuery(((QueryTree) instance).textualRepresentation(), os);
         } else {
             new JsonSerializer(getJsonFactory()).serialize(os, instance, this::displayName);
         }
     }
 
 
+    /**
+     * Writes the request for the given query text.
+     */
+    public void serializeQuery(String queryText, OutputStream os) throws IOException {
+        JsonGenerator generator = getJsonFactory().createGenerator(os);
+        generator.writeStartObject();
+        generator.writeFieldName(QUERY_FIELD);
+        generator.writeString(queryText);
+        generator.writeEndObject();
+        generator.flush();
+    }
+
     public TypedTree deserialize(InputStream inputStream) throws IOException, ProcessingException {
         // TODO support XML as well
         try {
@@ -79,20 +125,20 @@ public abstract class GraphQLQueryHandler implements QueryHandler {
                 }
                 if (jsonNode.get(RETURN_VALUE_FIELD) != null) {
                     return tryParseInstance(jsonNode.get(RETURN_VALUE_FIELD));
-                } else if (jsonNode.get(QUERY_FIELD) != null) {
-                    String query = jsonNode.get(QUERY_FIELD).asText();
+                } else if (jsonNode.hasNonNull(QUERY_FIELD) || persistedQueryHash(jsonNode) != null) {
                     String opName = jsonNode.get(QUERY_OPERATION_FIELD) != null ? jsonNode.get(QUERY_OPERATION_FIELD).asText() : null;
+                    String query = resolvePersistedQuery(jsonNode);
                     JsonNode variables = parseVariables(jsonNode);
                     if (query.contains(INTROSPECTION_ROOT)) {
                         return new IntrospectionQuery(query, opName);
                     } else {
-                        return GraphQLQueryParser.parse(this.endpoint, query, opName, variables);
+                        return parseQuery(query, opName, variables);
                     }
                 } else {
                     return tryParseInstance(jsonNode);
                 }
             } else if (jsonNode.isTextual() && jsonNode.asText().contains(QUERY_FIELD)) {
-                return GraphQLQueryParser.parse(this.endpoint, jsonNode.asText(), null, new ObjectNode(JsonNodeFactory.instance));
+                return parseQuery(jsonNode.asText(), null, new ObjectNode(JsonNodeFactory.instance));
             }
         } catch (JsonParseException parseException) {
             // TODO try with XML
@@ -101,8 +147,156 @@ public abstract class GraphQLQueryHandler implements QueryHandler {
         throw new ProcessingException("Could not interpret the input: unknown input format!");
     }
 
+    /**
+     * Registers the operations of the given manifest as persisted queries and prepares them for execution.
+     * Both the Apollo format ({"operations": [{"id": hash, "body": query}, ...]}) and plain {hash: query} objects are understood.
+     */
+    public void loadPersistedQueries(InputStream manifest) throws IOException {
+        JsonNode root = getObjectMapper().readTree(manifest);
+        List<String> queries = new ArrayList<>();
+        if (root.get(MANIFEST_OPERATIONS_FIELD) != null && root.get(MANIFEST_OPERATIONS_FIELD).isArray()) {
+            for (JsonNode operation : root.get(MANIFEST_OPERATIONS_FIELD)) {
+                if (operation.get("body") != null) {
+                    queries.add(operation.get("body").asText());
+                }
+            }
+        } else {
+            root.elements().forEachRemaining(query -> queries.add(query.asText()));
+        }
+        for (String query : queries) {
+            manifestQueries.put(sha256(query), query);
+            prepare(query, null);
+        }
+        logger.info("Loaded " + queries.size() + " persisted queries");
+    }
+
+    /**
+     * Called for every query that is registered as persisted query, may be used to do expensive preparations ahead.
+     */
+    protected void prepared(GraphQLQuery query) {
+    }
+
     // Helper methods
 
+    private String persistedQueryHash(JsonNode request) {
+        JsonNode hash = request.path(EXTENSIONS_FIELD).path(PERSISTED_QUERY_FIELD).path(PERSISTED_QUERY_HASH_FIELD);
+        return hash.isTextual() ? hash.asText().toLowerCase() : null;
+    }
+
+    private String resolvePersistedQuery(JsonNode request) throws GraphQueryErrorMessage {
+        String hash = persistedQueryHash(request);
+        // an explicit null is sent by clients that only send the hash
+        String query = request.hasNonNull(QUERY_FIELD) ? request.get(QUERY_FIELD).asText() : null;
+        if (hash == null) {
+            return query;
+        }
+        if (query == null) {
+            String persisted = manifestQueries.get(hash);
+            if (persisted == null) {
+                persisted = registeredQueries.getIfPresent(hash);
+            }
+            if (persisted == null) {
+                // the client will retry with the full query, which registers it
+                GraphQueryErrorMessage error = new GraphQueryErrorMessage();
+                error.addError(ParsingErrorMessages.persistedQueryNotFound(), ParsingErrorMessages.persistedQueryNotFoundCode());
+                throw error;
+            }
+            return persisted;
+        }
+        if (!sha256(query).equals(hash)) {
+            GraphQueryErrorMessage error = new GraphQueryErrorMessage();
+            error.addError(ParsingErrorMessages.persistedQueryHashMismatch(hash));
+            throw error;
+        }
+        if (!manifestQueries.containsKey(hash)) {
+            // parsed and planned right away by this very request, hence cached for the following hash-only requests
+            registeredQueries.put(hash, query);
+        }
+        return query;
+    }
+
+    private void prepare(String query, String opName) {
+        if (query.contains(INTROSPECTION_ROOT)) {
+            return;
+        }
+        try {
+            prepared(parseQuery(query, opName, new ObjectNode(JsonNodeFactory.instance)));
+        } catch (IOException | GraphQueryErrorMessage e) {
+            // e.g. a query with required variables, it is parsed when it is executed
+            logger.debug("Could not prepare persisted query", e);
+        }
+    }
+
+    private static String sha256(String query) {
+        return Hashing.sha256().hashString(query, StandardCharsets.UTF_8).toString();
+    }
+
+    private GraphQLQuery parseQuery(String query, String opName, JsonNode variables) throws IOException, GraphQueryErrorMessage {
+        if (parseCache == null) {
+            return GraphQLQueryParser.parse(this.endpoint, query, opName, variables);
+        }
+        // variable values end up in the parsed query, hence they are part of the key
+        ParseKey key = new ParseKey(query, opName, variables.toString());
+        ParseResult result = parseCache.getIfPresent(key);
+        if (result == null) {
+            try {
+                result = new ParseResult(GraphQLQueryParser.parse(this.endpoint, query, opName, variables), null);
+            } catch (GraphQueryErrorMessage error) {
+                // the caller may change the thrown instance, hence the cache keeps its own
+                parseCache.put(key, new ParseResult(null, error.copy()));
+                throw error;
+            }
+            parseCache.put(key, result);
+        }
+        if (result.error != null) {
+            // a fresh instance per request, with the stack trace of this request
+            throw result.error.copy();
+        }
+        return result.query;
+    }
+
+    private static final class ParseKey {
+        private final String query;
+        private final String operationName;
+        private final String variables;
+
+        private ParseKey(String query, String operationName, String variables) {
+            this.query = query;
+            this.operationName = operationName;
+            this.variables = variables;
+        }
+
+        int weight() {
+            return query.length() + variables.length() + (operationName == null ? 0 : operationName.length());
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            ParseKey parseKey = (ParseKey) o;
+            return query.equals(parseKey.query) &&
+                    Objects.equals(operationName, parseKey.operationName) &&
+                    variables.equals(parseKey.variables);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(query, operationName, variables);
+        }
+    }
+
+    private static final class ParseResult {
+        private final GraphQLQuery query;
+        // never thrown itself, only copies of it
+        private final GraphQueryErrorMessage error;
+
+        private ParseResult(GraphQLQuery query, GraphQueryErrorMessage error) {
+            this.query = query;
+            this.error = error;
+        }
+    }
+
 
 
     private JsonNode parseVariables(JsonNode jsonNode) throws JsonProcessingException {
@@ -37,12 +37,19 @@ public class GraphQueryErrorMessage extends ProcessingException {
         private final int column;
         private final int row;
         private final Stack<String> path;
+        // extensions.code, null if there is none
+        private final String code;
 
         public Error(String message, int column, int row, Stack<String> path) {
+            this(message, column, row, path, null);
+        }
+
+        public Error(String message, int column, int row, Stack<String> path, String code) {
             this.message = message;
             this.column = column;
             this.row = row;
             this.path = path;
+            this.code = code;
         }
 
         void write(JsonGenerator generator) throws IOException {
@@ -67,6 +74,13 @@ public class GraphQueryErrorMessage extends ProcessingException {
                 }
                 generator.writeEndArray();
             }
+            if (code != null) {
+                generator.writeFieldName("extensions");
+                generator.writeStartObject();
+                generator.writeFieldName("code");
+                generator.writeString(code);
+                generator.writeEndObject();
+            }
             generator.writeEndObject();
         }
 
@@ -76,12 +90,12 @@ public class GraphQueryErrorMessage extends ProcessingException {
             if (this == o) return true;
             if (o == null || getClass() != o.getClass()) return false;
             Error error = (Error) o;
-            return column == error.column && row == error.row && Objects.equal(message, error.message);
+            return column == error.column && row == error.row && Objects.equal(message, error.message) && Objects.equal(code, error.code);
         }
 
         @Override
         public int hashCode() {
-            return Objects.hashCode(message, column, row);
+            return Objects.hashCode(message, column, row, code);
         }
     }
 
@@ -96,10 +110,26 @@ public class GraphQueryErrorMessage extends ProcessingException {
         this.errors = new LinkedHashSet<>();
     }
 
+    /**
+     * A new message with the same errors, e.g. to throw a cached error again without sharing the instance.
+     */
+    public GraphQueryErrorMessage copy() {
+        GraphQueryErrorMessage result = new GraphQueryErrorMessage();
+        result.errors.addAll(this.errors);
+        return result;
+    }
+
     public void addError(String message) {
         this.errors.add(new Error(message, -1, -1, new Stack<>()));
     }
 
+    /**
+     * Adds an error with the given machine readable code (written as extensions.code).
+     */
+    public void addError(String message, String code) {
+        this.errors.add(new Error(message, -1, -1, new Stack<>(), code));
+    }
+
     public void addError(String message, int line, int column) {
         this.errors.add(new Error(message, column, line, new Stack<>()));
     }
@@ -0,0 +1,186 @@
+package io.corrlang.gqlintegration.queries;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import io.corrlang.domain.keys.Key;
+import io.corrlang.domain.keys.KeyNotEvaluated;
+import no.hvl.past.graph.elements.Triple;
+import no.hvl.past.names.Name;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Joins the elements of several endpoints by their key values: elements sharing at least one key value
+ * end up in the same group, transitively (i.e. the groups are the connected components).
+ * Key values are looked up in an open addressing table that is sized for the expected number of elements,
+ * the groups are tracked with union-find over the element indices.
+ * A key is only evaluated on elements that have all the fields it requires, so elements without a key value
+ * do not cost an exception. The fields are looked up by their display names in the system the element comes from.
+ * Groups come in the order of their first element, the elements of a group in the order they have been added.
+ */
+final class KeyJoin {
+
+    private final List<JsonNode> nodes;
+    private final List<String> systems;
+    private int[] parent;
+
+    // open addressing, key value -> index of the first element having it
+    private Name[] keyValues;
+    private int[] firstElements;
+    private int keyCount;
+
+    // system -> key -> the fields it requires, computed once per join
+    private final Map<String, Map<Key, String[]>> requiredFields = new HashMap<>();
+
+    KeyJoin(int expectedElements) {
+        int elements = Math.max(expectedElements, 4);
+        this.nodes = new ArrayList<>(elements);
+        this.systems = new ArrayList<>(elements);
+        this.parent = new int[elements];
+        // most keys are unique and there are rarely more than two per element
+        int capacity = Integer.highestOneBit(Math.max(elements * 4 - 1, 15)) << 1;
+        this.keyValues = new Name[capacity];
+        this.firstElements = new int[capacity];
+    }
+
+    void add(String system, JsonNode node, Collection<Key> keys, Function<Name, String> displayName) {
+        int element = nodes.size();
+        nodes.add(node);
+        systems.add(system);
+        if (element == parent.length) {
+            parent = Arrays.copyOf(parent, parent.length * 2);
+        }
+        parent[element] = element;
+        for (Key key : keys) {
+            if (!hasRequiredFields(system, key, node, displayName)) {
+                continue;
+            }
+            Name value;
+            try {
+                value = key.evaluate(node);
+            } catch (KeyNotEvaluated e) {
+                // only for values the key cannot handle, absent values are filtered above
+                continue;
+            }
+            int other = putIfAbsent(value, element);
+            if (other != element) {
+                union(element, other);
+            }
+        }
+    }
+
+    private boolean hasRequiredFields(String system, Key key, JsonNode node, Function<Name, String> displayName) {
+        String[] fields = requiredFields.computeIfAbsent(system, s -> new IdentityHashMap<>())
+                .computeIfAbsent(key, k -> fieldNames(k, displayName));
+        for (String field : fields) {
+            if (!node.hasNonNull(field)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String[] fieldNames(Key key, Function<Name, String> displayName) {
+        return key.requiredProperties().stream()
+                .map(Triple::getLabel)
+                .map(displayName)
+                .distinct()
+                .toArray(String[]::new);
+    }
+
+    /**
+     * The groups in the order of their first element.
+     */
+    List<Group> groups() {
+        List<Group> result = new ArrayList<>();
+        Group[] byRoot = new Group[nodes.size()];
+        for (int element = 0; element < nodes.size(); element++) {
+            int root = find(element);
+            if (root == element) {
+                // roots are the smallest element of their group
+                byRoot[root] = new Group();
+                result.add(byRoot[root]);
+            }
+            byRoot[root].systems.add(systems.get(element));
+            byRoot[root].nodes.add(nodes.get(element));
+        }
+        return result;
+    }
+
+    static final class Group {
+        final Set<String> systems = new LinkedHashSet<>();
+        final List<JsonNode> nodes = new ArrayList<>();
+    }
+
+    private int find(int element) {
+        while (parent[element] != element) {
+            // path halving
+            parent[element] = parent[parent[element]];
+            element = parent[element];
+        }
+        return element;
+    }
+
+    private void union(int left, int right) {
+        int leftRoot = find(left);
+        int rightRoot = find(right);
+        if (leftRoot < rightRoot) {
+            parent[rightRoot] = leftRoot;
+        } else if (rightRoot < leftRoot) {
+            parent[leftRoot] = rightRoot;
+        }
+    }
+
+    /**
+     * The element that has been registered for the given key value before or the given element if there is none.
+     */
+    private int putIfAbsent(Name value, int element) {
+        if (keyCount * 2 >= keyValues.length) {
+            rehash();
+        }
+        int mask = keyValues.length - 1;
+        int slot = spread(value.hashCode()) & mask;
+        while (keyValues[slot] != null) {
+            if (keyValues[slot].equals(value)) {
+                return firstElements[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        keyValues[slot] = value;
+        firstElements[slot] = element;
+        keyCount++;
+        return element;
+    }
+
+    private void rehash() {
+        Name[] oldValues = keyValues;
+        int[] oldElements = firstElements;
+        keyValues = new Name[oldValues.length * 2];
+        firstElements = new int[oldValues.length * 2];
+        int mask = keyValues.length - 1;
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldValues[i] != null) {
+                int slot = spread(oldValues[i].hashCode()) & mask;
+                while (keyValues[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                keyValues[slot] = oldValues[i];
+                firstElements[slot] = oldElements[i];
+            }
+        }
+    }
+
+    private static int spread(int hash) {
+        // linear probing needs the high bits mixed into the low ones
+        hash *= 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -0,0 +1,79 @@
+package io.corrlang.gqlintegration.queries;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The state of merging the local results of one execution of a federated query, i.e. the results that
+ * are queued at every {@link QueryCursor.LocalCursor}, the widths computed by the {@link QueryCursor.ConcatMergeCursor}s
+ * and the copied results of the roots that pass through.
+ * One context must only be used by one thread at a time, the cursors can be shared.
+ */
+public class MergeContext {
+
+    private final Map<QueryCursor.LocalCursor, ResultQueue> results = new IdentityHashMap<>();
+    private final Map<QueryCursor.ConcatMergeCursor, Integer> widths = new IdentityHashMap<>();
+    private final Map<QueryCursor.ConcatCursor, TokenBuffer> passthroughs = new IdentityHashMap<>();
+
+    ResultQueue results(QueryCursor.LocalCursor cursor) {
+        return results.computeIfAbsent(cursor, c -> new ResultQueue());
+    }
+
+    int width(QueryCursor.ConcatMergeCursor cursor) {
+        return widths.getOrDefault(cursor, 0);
+    }
+
+    void setWidth(QueryCursor.ConcatMergeCursor cursor, int width) {
+        widths.put(cursor, width);
+    }
+
+    /**
+     * The already renamed result of a root that is copied from its endpoint (see {@link Passthrough}), null if there is none.
+     */
+    TokenBuffer passthrough(QueryCursor.ConcatCursor root) {
+        return passthroughs.get(root);
+    }
+
+    void setPassthrough(QueryCursor.ConcatCursor root, TokenBuffer result) {
+        passthroughs.put(root, result);
+    }
+
+    /**
+     * The results queued at one local cursor, one entry (the values of the field) per parent object.
+     * Entries are consumed by advancing a read position, hence merging stays linear in the number of entries.
+     */
+    static final class ResultQueue {
+
+        private final List<List<JsonNode>> entries = new ArrayList<>();
+        private int head;
+
+        void add(List<JsonNode> entry) {
+            entries.add(entry);
+        }
+
+        boolean isEmpty() {
+            return head == entries.size();
+        }
+
+        /**
+         * The current entry, must not be called on an empty queue.
+         */
+        List<JsonNode> peek() {
+            return entries.get(head);
+        }
+
+        void poll() {
+            // drop the reference such that consumed results can be collected while merging goes on
+            entries.set(head++, null);
+            if (head == entries.size()) {
+                entries.clear();
+                head = 0;
+            }
+        }
+    }
+}
@@ -44,4 +44,22 @@ public class ParsingErrorMessages {
     public static String unknownOperationChosen(String operationName) {
         return "There is no operation definition with name '" + operationName + "'!";
     }
+
+    /**
+     * Message defined by the automatic persisted queries protocol, clients answer it by sending the full query.
+     */
+    public static String persistedQueryNotFound() {
+        return "PersistedQueryNotFound";
+    }
+
+    /**
+     * The code clients of the automatic persisted queries protocol check for before retrying with the full query.
+     */
+    public static String persistedQueryNotFoundCode() {
+        return "PERSISTED_QUERY_NOT_FOUND";
+    }
+
+    public static String persistedQueryHashMismatch(String hash) {
+        return "The provided query does not match the persisted query hash '" + hash + "'!";
+    }
 }
@@ -0,0 +1,211 @@
+package io.corrlang.gqlintegration.queries;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Copies the result of a query root that is served by exactly one endpoint and is not merged by keys
+ * token by token from the local response to the global response, i.e. without going through the cursors.
+ * Fields are renamed where the local and the global display names differ, fields that the endpoint does not
+ * know are written as null (empty list), subtrees that need no changes are copied as they are.
+ */
+public final class Passthrough {
+
+    private final String url;
+    private final String localField;
+    private final Projection projection;
+
+    private Passthrough(String url, String localField, Projection projection) {
+        this.url = url;
+        this.localField = localField;
+        this.projection = projection;
+    }
+
+    /**
+     * The passthrough for the given root or null if its result has to be merged by the cursors.
+     */
+    public static Passthrough of(QueryCursor.ConcatCursor root) {
+        if (root instanceof QueryCursor.ConcatMergeCursor || root.getLocalCursors().size() != 1) {
+            return null;
+        }
+        Map.Entry<String, QueryCursor.LocalCursor> local = root.getLocalCursors().entrySet().iterator().next();
+        Projection projection = project(root, local.getKey(), local.getValue());
+        return projection == null ? null : new Passthrough(local.getKey(), local.getValue().getQueryNode().field(), projection);
+    }
+
+    /**
+     * The endpoint serving the root.
+     */
+    public String getUrl() {
+        return url;
+    }
+
+    /**
+     * The name of the root in the global response.
+     */
+    public String getField() {
+        return projection.name;
+    }
+
+    /**
+     * The name of the root in the local response.
+     */
+    public String getLocalField() {
+        return localField;
+    }
+
+    /**
+     * Whether the local result only differs in the name of the root, i.e. everything below it can be copied as it is.
+     */
+    public boolean isRenamingRootOnly() {
+        return projection.subtreeIdentity;
+    }
+
+    /**
+     * Writes the value the parser is positioned at (renamed and completed) to the generator, the field name is not written.
+     */
+    public void write(JsonParser parser, JsonGenerator generator) throws IOException {
+        projection.write(parser, generator);
+    }
+
+    /**
+     * Writes the root (field name and value) for a local response that does not contain it.
+     */
+    public void writeMissing(JsonGenerator generator) throws IOException {
+        projection.writeMissing(generator);
+    }
+
+    private static Projection project(QueryCursor global, String url, QueryCursor.LocalCursor local) {
+        GraphQLQuery.AbstractSelection globalNode = global.getQueryNode();
+        GraphQLQuery.AbstractSelection localNode = local.getQueryNode();
+        if (globalNode.isComplex() != localNode.isComplex() || globalNode.isListValued() != localNode.isListValued()) {
+            return null;
+        }
+        List<Projection> children = new ArrayList<>();
+        Map<String, Integer> childIndex = new HashMap<>();
+        boolean subtreeIdentity = global.getChildrenPos().size() == local.getChildrenPos().size();
+        for (QueryCursor child : global.getChildrenPos()) {
+            if (!(child instanceof QueryCursor.ConcatCursor) || child instanceof QueryCursor.ConcatMergeCursor) {
+                return null;
+            }
+            Map<String, QueryCursor.LocalCursor> localChildren = ((QueryCursor.ConcatCursor) child).getLocalCursors();
+            if (localChildren.isEmpty()) {
+                children.add(new Projection(child.getQueryNode(), null));
+                subtreeIdentity = false;
+                continue;
+            }
+            QueryCursor.LocalCursor localChild = localChildren.get(url);
+            if (localChildren.size() != 1 || localChild == null || !local.getChildrenPos().contains(localChild)) {
+                return null;
+            }
+            Projection projection = project(child, url, localChild);
+            if (projection == null || childIndex.putIfAbsent(localChild.getQueryNode().field(), children.size()) != null) {
+                return null;
+            }
+            children.add(projection);
+            subtreeIdentity &= projection.identity;
+        }
+        return new Projection(globalNode, localNode.field(), children, childIndex, subtreeIdentity);
+    }
+
+    private static final class Projection {
+
+        private final String name;
+        // null if the endpoint does not know the field
+        private final String localName;
+        private final boolean listValued;
+        private final boolean complex;
+        private final List<Projection> children;
+        private final Map<String, Integer> childIndex;
+        // nothing below this field changes
+        private final boolean subtreeIdentity;
+        // neither this field nor anything below it changes
+        private final boolean identity;
+
+        private Projection(GraphQLQuery.AbstractSelection global, String localName, List<Projection> children, Map<String, Integer> childIndex, boolean subtreeIdentity) {
+            this.name = global.field();
+            this.localName = localName;
+            this.listValued = global.isListValued();
+            this.complex = global.isComplex();
+            this.children = children;
+            this.childIndex = childIndex;
+            this.subtreeIdentity = subtreeIdentity;
+            this.identity = subtreeIdentity && name.equals(localName);
+        }
+
+        private Projection(GraphQLQuery.AbstractSelection global, String localName) {
+            this(global, localName, new ArrayList<>(), new HashMap<>(), false);
+        }
+
+        void write(JsonParser parser, JsonGenerator generator) throws IOException {
+            JsonToken token = parser.getCurrentToken();
+            if (token == JsonToken.START_ARRAY) {
+                if (subtreeIdentity) {
+                    generator.copyCurrentStructure(parser);
+                    return;
+                }
+                generator.writeStartArray();
+                while (parser.nextToken() != JsonToken.END_ARRAY) {
+                    writeElement(parser, generator);
+                }
+                generator.writeEndArray();
+            } else if (listValued && token != JsonToken.VALUE_NULL) {
+                generator.writeStartArray();
+                writeElement(parser, generator);
+                generator.writeEndArray();
+            } else {
+                writeElement(parser, generator);
+            }
+        }
+
+        private void writeElement(JsonParser parser, JsonGenerator generator) throws IOException {
+            if (subtreeIdentity || !complex || parser.getCurrentToken() != JsonToken.START_OBJECT) {
+                generator.copyCurrentStructure(parser);
+                return;
+            }
+            generator.writeStartObject();
+            boolean[] written = new boolean[children.size()];
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                Integer index = childIndex.get(parser.getCurrentName());
+                parser.nextToken();
+                if (index == null) {
+                    parser.skipChildren();
+                    continue;
+                }
+                // keeps the query order as long as the endpoint does
+                for (int i = 0; i < index; i++) {
+                    if (!written[i] && children.get(i).localName == null) {
+                        children.get(i).writeMissing(generator);
+                        written[i] = true;
+                    }
+                }
+                generator.writeFieldName(children.get(index).name);
+                children.get(index).write(parser, generator);
+                written[index] = true;
+            }
+            for (int i = 0; i < children.size(); i++) {
+                if (!written[i]) {
+                    children.get(i).writeMissing(generator);
+                }
+            }
+            generator.writeEndObject();
+        }
+
+        private void writeMissing(JsonGenerator generator) throws IOException {
+            generator.writeFieldName(name);
+            if (listValued) {
+                generator.writeStartArray();
+                generator.writeEndArray();
+            } else {
+                generator.writeNull();
+            }
+        }
+    }
+}
@@ -1,21 +1,28 @@
 package io.corrlang.gqlintegration.queries;
 
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.MissingNode;
+import com.fasterxml.jackson.databind.node.NullNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.google.common.collect.Multimap;
 import no.hvl.past.graph.trees.TreeCreator;
 import io.corrlang.domain.keys.Key;
-import io.corrlang.domain.keys.KeyNotEvaluated;
-import no.hvl.past.names.AnonymousIdentifier;
 import no.hvl.past.names.Name;
 
 import java.io.IOException;
 import java.util.*;
+import java.util.function.Function;
 
 // TODO abstraction for the generator to yield errors
+/**
+ * Describes how the local results of a federated query are traversed and merged.
+ * Cursors are not changed once a query has been split, all results are kept in the {@link MergeContext} of one execution.
+ */
 public abstract class QueryCursor {
 
     private final GraphQLQuery.AbstractSelection queryNode;
@@ -53,7 +60,7 @@ public abstract class QueryCursor {
         }
 
     }
-    public abstract void atomic(TreeCreator creator) throws IOException;
+    public abstract void atomic(MergeContext context, TreeCreator creator) throws IOException;
 
     public void leaveChild(TreeCreator creator) throws IOException {
         if (getQueryNode().isComplex()) {
@@ -66,7 +73,7 @@ public abstract class QueryCursor {
         creator.endBranch();
     }
 
-    public abstract void processOne(TreeCreator creator) throws IOException;
+    public abstract void processOne(MergeContext context, TreeCreator creator) throws IOException;
 
 
     List<QueryCursor> getChildrenPos() {
@@ -75,7 +82,7 @@ public abstract class QueryCursor {
 
     public static class LocalCursor extends QueryCursor {
 
-        private List<List<JsonNode>> result = new ArrayList<>();
+        private static final JsonNode STREAMED_OBJECT = MissingNode.getInstance();
 
         public LocalCursor(GraphQLQuery.AbstractSelection queryNode) {
             super(queryNode);
@@ -86,11 +93,12 @@ public abstract class QueryCursor {
         }
 
         @Override
-        public void atomic(TreeCreator creator) throws IOException {
-            if ((this.result.isEmpty() || this.result.get(0).isEmpty()) && !getQueryNode().isListValued()) {
+        public void atomic(MergeContext context, TreeCreator creator) throws IOException {
+            MergeContext.ResultQueue result = context.results(this);
+            if ((result.isEmpty() || result.peek().isEmpty()) && !getQueryNode().isListValued()) {
                 creator.empty();
             } else {
-                for (JsonNode v : this.result.get(0)) {
+                for (JsonNode v : result.peek()) {
                     value(creator, v);
                 }
             }
@@ -118,41 +126,59 @@ public abstract class QueryCursor {
             }
         }
 
-        int getWidth() {
-            if (this.result.isEmpty()) {
+        int getWidth(MergeContext context) {
+            MergeContext.ResultQueue result = context.results(this);
+            if (result.isEmpty()) {
                 return 0;
             } else {
-                return this.result.get(0).size();
+                return result.peek().size();
             }
         }
 
+        boolean hasResult(MergeContext context) {
+            return !context.results(this).isEmpty();
+        }
+
+        /**
+         * Whether the value at the given index of the current entry is null, null values of complex fields
+         * are written as null (like on the passthrough path) and have no entries at the children.
+         */
+        boolean isNull(MergeContext context, int index) {
+            return context.results(this).peek().get(index).isNull();
+        }
+
         @Override
-        public void processOne(TreeCreator generator) throws IOException {
-            if (!this.result.isEmpty()) {
+        public void processOne(MergeContext context, TreeCreator generator) throws IOException {
+            if (hasResult(context)) {
                 enter(generator);
                 if (this.getQueryNode().isComplex()) {
-                    complex(generator);
+                    complex(context, generator);
                 } else {
-                    this.atomic(generator);
+                    this.atomic(context, generator);
                 }
-                this.moveOn();
+                this.moveOn(context);
                 leave(generator);
             }
         }
 
         @Override
-        protected void moveOn() {
-            this.result.remove(0);
+        protected void moveOn(MergeContext context) {
+            context.results(this).poll();
         }
 
-        private void complex(TreeCreator generator) throws IOException {
-            if (this.result.get(0).isEmpty() && !getQueryNode().isListValued()) {
+        private void complex(MergeContext context, TreeCreator generator) throws IOException {
+            if (context.results(this).peek().isEmpty() && !getQueryNode().isListValued()) {
                 generator.empty();
             } else {
-                for (int i = 0; i < getWidth(); i++) {
+                int width = getWidth(context);
+                for (int i = 0; i < width; i++) {
+                    if (isNull(context, i)) {
+                        generator.empty();
+                        continue;
+                    }
                     enterChild(generator);
                     for (QueryCursor cursor : this.getChildrenPos()) {
-                        cursor.processOne(generator);
+                        cursor.processOne(context, generator);
                     }
                     leaveChild(generator);
                 }
@@ -160,31 +186,104 @@ public abstract class QueryCursor {
         }
 
 
-        public void addResult(JsonNode rootNode) {
+        public void addResult(MergeContext context, JsonNode rootNode) {
+            MergeContext.ResultQueue result = context.results(this);
             JsonNode node = rootNode.get(getQueryNode().field());
             if (node != null) {
                 if (node.isArray()) {
-                    List<JsonNode> toAdd = new ArrayList<>();
+                    List<JsonNode> toAdd = new ArrayList<>(node.size());
                     for (JsonNode child : node) {
                         toAdd.add(child);
-                        propagateDown(child);
+                        propagateDown(context, child);
                     }
                     result.add(toAdd);
                 } else {
-                    propagateDown(node);
-                    this.result.add(Collections.singletonList(node));
+                    propagateDown(context, node);
+                    result.add(Collections.singletonList(node));
                 }
             } else {
-                this.result.add(Collections.emptyList());
+                result.add(Collections.emptyList());
+            }
+        }
+
+        /**
+         * Like {@link #addResult(MergeContext, JsonNode)}, but reads the value of this field from the given parser,
+         * which is positioned at the first token of the value. Only the values of atomic fields are materialized.
+         */
+        public void addResult(MergeContext context, JsonParser parser) throws IOException {
+            MergeContext.ResultQueue result = context.results(this);
+            if (parser.getCurrentToken() == JsonToken.START_ARRAY) {
+                List<JsonNode> toAdd = new ArrayList<>();
+                while (parser.nextToken() != JsonToken.END_ARRAY) {
+                    toAdd.add(readElement(context, parser));
+                }
+                result.add(toAdd);
+            } else {
+                result.add(Collections.singletonList(readElement(context, parser)));
+            }
+        }
+
+        /**
+         * Records that the parent object does not have this field.
+         */
+        public void addMissing(MergeContext context) {
+            context.results(this).add(Collections.emptyList());
+        }
+
+        private JsonNode readElement(MergeContext context, JsonParser parser) throws IOException {
+            if (parser.getCurrentToken() == JsonToken.VALUE_NULL) {
+                return NullNode.getInstance();
             }
+            if (!getQueryNode().isComplex() || parser.getCurrentToken() != JsonToken.START_OBJECT) {
+                JsonNode value = parser.readValueAsTree();
+                propagateDown(context, value);
+                return value;
+            }
+            List<QueryCursor> children = getChildrenPos();
+            boolean[] fed = new boolean[children.size()];
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                parser.nextToken();
+                int match = -1;
+                boolean selectedTwice = false;
+                for (int i = 0; i < children.size(); i++) {
+                    if (children.get(i) instanceof LocalCursor && field.equals(children.get(i).getQueryNode().field())) {
+                        selectedTwice = match >= 0;
+                        match = match < 0 ? i : match;
+                    }
+                }
+                if (match < 0) {
+                    parser.skipChildren();
+                } else if (!selectedTwice) {
+                    ((LocalCursor) children.get(match)).addResult(context, parser);
+                    fed[match] = true;
+                } else {
+                    // the tokens can only be consumed once
+                    ObjectNode holder = JsonNodeFactory.instance.objectNode();
+                    holder.set(field, parser.readValueAsTree());
+                    for (int i = match; i < children.size(); i++) {
+                        if (children.get(i) instanceof LocalCursor && field.equals(children.get(i).getQueryNode().field())) {
+                            ((LocalCursor) children.get(i)).addResult(context, holder);
+                            fed[i] = true;
+                        }
+                    }
+                }
+            }
+            for (int i = 0; i < children.size(); i++) {
+                if (!fed[i] && children.get(i) instanceof LocalCursor) {
+                    ((LocalCursor) children.get(i)).addMissing(context);
+                }
+            }
+            // complex values are only counted, their fields have been handed to the children
+            return STREAMED_OBJECT;
         }
 
-        private void propagateDown(JsonNode child) {
-            if (getQueryNode().isComplex()) {
+        private void propagateDown(MergeContext context, JsonNode child) {
+            if (getQueryNode().isComplex() && !child.isNull()) {
                 for (QueryCursor childCursor : getChildrenPos()) {
                     if (childCursor instanceof LocalCursor) {
                         LocalCursor localCursor = (LocalCursor) childCursor;
-                        localCursor.addResult(child);
+                        localCursor.addResult(context, child);
                     }
                 }
             }
@@ -214,22 +313,22 @@ public abstract class QueryCursor {
             return localCursors;
         }
 
-        public void addResults(Map<String, JsonNode> localResults) {
+        public void addResults(MergeContext context, Map<String, JsonNode> localResults) {
             for (String key : localResults.keySet()) {
                 JsonNode jsonNode = localResults.get(key);
                 LocalCursor localCursor = this.localCursors.get(key);
-                localCursor.addResult(jsonNode);
+                localCursor.addResult(context, jsonNode);
             }
         }
 
         @Override
-        public void atomic(TreeCreator generator) throws IOException {
+        public void atomic(MergeContext context, TreeCreator generator) throws IOException {
 //            for (String key : this.localCursors.keySet()) {
 //                this.localCursors.get(key).atomic(generator);
 //            }
             for (String key : this.localCursors.keySet()) {
-                if (!this.localCursors.get(key).result.isEmpty()) {
-                    this.localCursors.get(key).atomic(generator);
+                if (this.localCursors.get(key).hasResult(context)) {
+                    this.localCursors.get(key).atomic(context, generator);
                     break;
                 }
             }
@@ -237,39 +336,43 @@ public abstract class QueryCursor {
 //            this.localCursors.get(next).atomic(generator);
         }
 
-        public void processOneForBranch(String key, TreeCreator generator) throws IOException {
+        public void processOneForBranch(MergeContext context, String key, TreeCreator generator) throws IOException {
             enter(generator);
             if (!getQueryNode().isComplex()) {
-                atomic(key, generator);
+                atomic(context, key, generator);
             } else {
                 if (!localCursors.containsKey(key)) {
                     if (!getQueryNode().isListValued()) {
                         generator.empty();
                     }
                 } else {
-                    int width = this.localCursors.get(key).getWidth();
+                    int width = this.localCursors.get(key).getWidth(context);
                     for (int i = 0; i < width; i++) {
+                        if (this.localCursors.get(key).isNull(context, i)) {
+                            generator.empty();
+                            continue;
+                        }
                         enterChild(generator);
                         for (QueryCursor cursor : getChildrenPos()) {
                             if (cursor instanceof ConcatCursor) {
-                                ((ConcatCursor) cursor).processOneForBranch(key, generator);
+                                ((ConcatCursor) cursor).processOneForBranch(context, key, generator);
                             } else {
-                                processOne(generator);
+                                processOne(context, generator);
                             }
                         }
                         leaveChild(generator);
                     }
-                    this.localCursors.get(key).result.remove(0); // TODO should become get next
+                    context.results(this.localCursors.get(key)).poll();
                 }
             }
             leave(generator);
         }
 
-        private void atomic(String key, TreeCreator generator) throws IOException {
+        private void atomic(MergeContext context, String key, TreeCreator generator) throws IOException {
             if (this.localCursors.containsKey(key)) {
-                this.localCursors.get(key).atomic(generator);
-                if (!localCursors.get(key).result.isEmpty()) {
-                    this.localCursors.get(key).result.remove(0);
+                this.localCursors.get(key).atomic(context, generator);
+                if (localCursors.get(key).hasResult(context)) {
+                    context.results(this.localCursors.get(key)).poll();
                 }
             } else if (!getQueryNode().isListValued()) {
                 generator.empty();
@@ -277,21 +380,26 @@ public abstract class QueryCursor {
         }
 
         @Override
-        public void processOne(TreeCreator generator) throws IOException {
+        public void processOne(MergeContext context, TreeCreator generator) throws IOException {
             enter(generator);
             if (!getQueryNode().isComplex()) {
-                atomic(generator);
+                atomic(context, generator);
             } else {
                 boolean hadValue = false;
                 for (String key : this.localCursors.keySet()) { // TODO should become hasNext
-                    for (int i = 0; i < this.localCursors.get(key).getWidth(); i++) {
+                    int width = this.localCursors.get(key).getWidth(context);
+                    for (int i = 0; i < width; i++) {
                         hadValue = true;
+                        if (this.localCursors.get(key).isNull(context, i)) {
+                            generator.empty();
+                            continue;
+                        }
                         enterChild(generator);
                         for (QueryCursor cursor : getChildrenPos()) {
                             if (cursor instanceof ConcatCursor) {
-                                ((ConcatCursor) cursor).processOneForBranch(key,generator);
+                                ((ConcatCursor) cursor).processOneForBranch(context, key,generator);
                             } else {
-                                cursor.processOne(generator);
+                                cursor.processOne(context, generator);
                             }
                         }
                         leaveChild(generator);
@@ -305,10 +413,10 @@ public abstract class QueryCursor {
         }
 
         @Override
-        protected void moveOn() {
+        protected void moveOn(MergeContext context) {
             for (String key : this.localCursors.keySet()) {
-                if (!localCursors.get(key).result.isEmpty()) {
-                    this.localCursors.get(key).moveOn();
+                if (localCursors.get(key).hasResult(context)) {
+                    this.localCursors.get(key).moveOn(context);
                     break;
                 }
             }
@@ -319,48 +427,59 @@ public abstract class QueryCursor {
     public static class ConcatMergeCursor extends ConcatCursor {
 
         private final Multimap<String, Key> keys;
-        private int width = 0;
+        // system -> the names its fields have in the results, systems without one use the unprefixed labels
+        private final Map<String, Function<Name, String>> displayNames;
 
         public ConcatMergeCursor(GraphQLQuery.AbstractSelection queryNode, Map<String, LocalCursor> localCursors, Multimap<String, Key> keys) {
+            this(queryNode, localCursors, keys, Collections.emptyMap());
+        }
+
+        public ConcatMergeCursor(GraphQLQuery.AbstractSelection queryNode, Map<String, LocalCursor> localCursors, Multimap<String, Key> keys, Map<String, Function<Name, String>> displayNames) {
             super(queryNode, localCursors);
             this.keys = keys;
+            this.displayNames = displayNames;
         }
 
         public ConcatMergeCursor(GraphQLQuery.AbstractSelection queryNode, QueryCursor parent, Map<String, LocalCursor> localCursors, Multimap<String, Key> keys) {
-            super(queryNode, parent, localCursors);
-            this.keys = keys;
+            this(queryNode, parent, localCursors, keys, Collections.emptyMap());
         }
 
-        public Set<Name> evaluateKeys(String sysKey, JsonNode node) {
-            Set<Name> result = new HashSet<>();
-            for (Key k : this.keys.get(sysKey)) {
-                try {
-                    result.add(k.evaluate(node));
-                } catch (KeyNotEvaluated e) {
-
-                }
-            }
-            return result;
+        public ConcatMergeCursor(GraphQLQuery.AbstractSelection queryNode, QueryCursor parent, Map<String, LocalCursor> localCursors, Multimap<String, Key> keys, Map<String, Function<Name, String>> displayNames) {
+            super(queryNode, parent, localCursors);
+            this.keys = keys;
+            this.displayNames = displayNames;
         }
 
-
         @Override
-        public void addResults(Map<String, JsonNode> localResults) {
-            Map<Name, MergeJsonNode> merges = new LinkedHashMap<>();
+        public void addResults(MergeContext context, Map<String, JsonNode> localResults) {
+            int expected = 0;
             for (String key : localResults.keySet()) {
                 JsonNode jsonNode = localResults.get(key).get(getLocalCursors().get(key).getQueryNode().field());
+                expected += jsonNode == null ? 0 : jsonNode.isArray() ? jsonNode.size() : 1;
+            }
+            KeyJoin join = new KeyJoin(expected);
+            for (String key : localResults.keySet()) {
+                JsonNode jsonNode = localResults.get(key).get(getLocalCursors().get(key).getQueryNode().field());
+                Collection<Key> systemKeys = this.keys.get(key);
+                Function<Name, String> displayName = this.displayNames.getOrDefault(key, label -> label.unprefixAll().printRaw());
                 if (jsonNode != null) {
+                    // null values are no elements, the merged field is null if no endpoint has one
                     if (jsonNode.isArray()) {
                         for (JsonNode node : jsonNode) {
-                            mergeIn(merges, key, node);
+                            if (!node.isNull()) {
+                                join.add(key, node, systemKeys, displayName);
+                            }
                         }
-                    } else {
-                        mergeIn(merges,key,jsonNode);
+                    } else if (!jsonNode.isNull()) {
+                        join.add(key, jsonNode, systemKeys, displayName);
                     }
                 }
             }
-            Set<MergeJsonNode> values = new LinkedHashSet<>(merges.values());
-            this.width = values.size();
+            List<MergeJsonNode> values = new ArrayList<>();
+            for (KeyJoin.Group group : join.groups()) {
+                values.add(new MergeJsonNode(group.systems, group.nodes));
+            }
+            context.setWidth(this, values.size());
             for (MergeJsonNode m : values) {
                 for (QueryCursor cursor : getChildrenPos()) {
                     if (cursor instanceof ConcatCursor) {
@@ -372,121 +491,56 @@ public abstract class QueryCursor {
                             String current = sysKeyIterator.next();
                             if (m.systems.contains(current)) {
                                 notFound = false;
-                                cc.addResults(Collections.singletonMap(current, m.mergeNode(cc.localCursors.get(current).getQueryNode().field(), cursor.getQueryNode().isListValued())));
+                                cc.addResults(context, Collections.singletonMap(current, m.mergeNode(cc.localCursors.get(current).getQueryNode().field(), cursor.getQueryNode().isListValued())));
                             }
                         }
                         if (notFound) {
-                            cc.addResults(Collections.singletonMap(cc.localCursors.keySet().iterator().next(), JsonNodeFactory.instance.objectNode()));
+                            cc.addResults(context, Collections.singletonMap(cc.localCursors.keySet().iterator().next(), JsonNodeFactory.instance.objectNode()));
                         }
                     } else if (cursor instanceof LocalCursor) {
-                        ((LocalCursor)cursor).addResult(m.mergeNode(cursor.getQueryNode().field(), cursor.getQueryNode().isListValued()));
-                    }
-                }
-
-            }
-        }
-
-        private void mergeIn(Map<Name, MergeJsonNode> merges, String system, JsonNode node) {
-            Set<Name> names = evaluateKeys(system, node);
-            if (names.isEmpty()) {
-                AnonymousIdentifier anon = Name.anonymousIdentifier();
-                merges.put(anon, new MergeJsonNode(anon, system, node));
-            } else {
-                List<MergeJsonNode> mergePartners = new ArrayList<>();
-                Iterator<Name> iterator = names.iterator();
-                while (iterator.hasNext()) {
-                    Name k = iterator.next();
-                    if (merges.containsKey(k)) {
-                        mergePartners.add(merges.get(k));
-                        iterator.remove();
+                        ((LocalCursor)cursor).addResult(context, m.mergeNode(cursor.getQueryNode().field(), cursor.getQueryNode().isListValued()));
                     }
                 }
-                if (mergePartners.isEmpty()) {
-                    MergeJsonNode mNode = new MergeJsonNode(names, system, node);
-                    for (Name k : names) {
-                        merges.put(k, mNode);
-                    }
-                } else {
-                    if (mergePartners.size() == 1) {
-                        mergePartners.get(0).nodes.add(node);
-                        mergePartners.get(0).systems.add(system);
-                        mergePartners.get(0).keyValues.addAll(names);
-                    } else {
-                        Set<Name> allKeys = new HashSet<>();
-                        Set<String> allSystems = new LinkedHashSet<>();
-                        List<JsonNode> allNodes = new ArrayList<>();
-                        for (MergeJsonNode mergePartner : mergePartners) {
-                            allKeys.addAll(mergePartner.keyValues);
-                            allSystems.addAll(mergePartner.systems);
-                            allNodes.addAll(mergePartner.nodes);
-                        }
-                        allKeys.addAll(names);
-                        allSystems.add(system);
-                        allNodes.add(node);
-
-                        MergeJsonNode mNode = new MergeJsonNode(allKeys, allSystems, allNodes);
-                        for (Name k : allKeys) {
-                            merges.put(k, mNode);
-                        }
-                    }
-
-                }
 
             }
         }
 
         @Override
-        public void processOne(TreeCreator generator) throws IOException {
+        public void processOne(MergeContext context, TreeCreator generator) throws IOException {
             enter(generator);
             if (!getQueryNode().isComplex()) {
-                atomic(generator); // TODO overwrite with merging beahvior
+                atomic(context, generator); // TODO overwrite with merging beahvior
             } else {
+                int width = context.width(this);
                 for (int i = 0; i < width; i++) {
                     enterChild(generator);
                     for (QueryCursor cursor : getChildrenPos()) {
-                        cursor.processOne(generator);
-                        cursor.moveOn();
+                        cursor.processOne(context, generator);
+                        cursor.moveOn(context);
                     }
                     leaveChild(generator);
                 }
+                if (width == 0 && !getQueryNode().isListValued()) {
+                    generator.empty();
+                }
             }
             leave(generator);
         }
     }
 
-    protected abstract void moveOn();
+    protected abstract void moveOn(MergeContext context);
 
     private static class MergeJsonNode {
 
-
-        private Set<Name> keyValues;
         // TODO work with multimaps here, then merging retriving the right object per endpoint becomes more straightforward
-        private Set<String> systems;
-        private List<JsonNode> nodes;
+        private final Set<String> systems;
+        private final List<JsonNode> nodes;
 
-        public MergeJsonNode(Set<Name> keyValues, Set<String> systems, List<JsonNode> nodes) {
-            this.keyValues = keyValues;
+        public MergeJsonNode(Set<String> systems, List<JsonNode> nodes) {
             this.systems = systems;
             this.nodes = nodes;
         }
 
-        public MergeJsonNode(Set<Name> keys, String system, JsonNode node) {
-            this.keyValues = keys;
-            this.systems = new HashSet<>();
-            this.nodes = new ArrayList<>();
-            this.systems.add(system);
-            this.nodes.add(node);
-        }
-
-        public MergeJsonNode(Name key, String system, JsonNode node) {
-            this.keyValues = new HashSet<>();
-            this.systems = new HashSet<>();
-            this.nodes = new ArrayList<>();
-            this.keyValues.add(key);
-            this.systems.add(system);
-            this.nodes.add(node);
-        }
-
         JsonNode mergeNode(String field, boolean isListValued) {
             ObjectNode result = JsonNodeFactory.instance.objectNode();
             if (isListValued) {
@@ -0,0 +1,169 @@
+package io.corrlang.gqlintegration.queries;
+
+import io.corrlang.domain.Sys;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The result of splitting a federated query: the local query per endpoint (and its serialized request)
+ * together with the cursors that merge the local results.
+ * A plan is never changed after it has been created, the results of an execution are kept in a {@link MergeContext},
+ * hence one plan can serve any number of concurrent requests of the same query shape.
+ * The local queries carry the argument values of the query the plan has been created for,
+ * the local requests of a plan that has been bound to other values (see {@link #bind(List, Map)}) carry those.
+ */
+public class QueryPlan {
+
+    private final Map<Sys, GraphQLQuery> localQueries;
+    private final Map<Sys, byte[]> localRequests;
+    private final List<QueryCursor.ConcatCursor> rootCursors;
+    private final Map<QueryCursor.ConcatCursor, Passthrough> passthroughs;
+    // the only endpoint, if its response can be forwarded with renamed roots, null otherwise
+    private final Sys forwardTarget;
+    private final Map<String, Passthrough> forwardedRoots;
+    // the simple arguments of the query the plan has been created for and the values the local requests carry
+    private final List<GraphQLQuery.SimpleArgument> parameters;
+    private final List<String> arguments;
+
+    QueryPlan(Map<Sys, GraphQLQuery> localQueries, Map<Sys, byte[]> localRequests, List<QueryCursor.ConcatCursor> rootCursors) {
+        this(localQueries, localRequests, rootCursors, Collections.emptyList());
+    }
+
+    QueryPlan(
+            Map<Sys, GraphQLQuery> localQueries,
+            Map<Sys, byte[]> localRequests,
+            List<QueryCursor.ConcatCursor> rootCursors,
+            List<GraphQLQuery.SimpleArgument> parameters) {
+        this.parameters = Collections.unmodifiableList(new ArrayList<>(parameters));
+        this.arguments = valueTexts(parameters);
+        this.localQueries = Collections.unmodifiableMap(new LinkedHashMap<>(localQueries));
+        this.localRequests = Collections.unmodifiableMap(new LinkedHashMap<>(localRequests));
+        this.rootCursors = Collections.unmodifiableList(new ArrayList<>(rootCursors));
+        this.passthroughs = new IdentityHashMap<>();
+        for (QueryCursor.ConcatCursor root : rootCursors) {
+            Passthrough passthrough = Passthrough.of(root);
+            if (passthrough != null) {
+                passthroughs.put(root, passthrough);
+            }
+        }
+        this.forwardedRoots = forwardedRoots(this.localQueries, this.rootCursors, this.passthroughs);
+        this.forwardTarget = forwardedRoots == null ? null : this.localQueries.keySet().iterator().next();
+    }
+
+    private QueryPlan(QueryPlan plan, Map<Sys, byte[]> localRequests, List<String> arguments) {
+        this.parameters = plan.parameters;
+        this.arguments = arguments;
+        this.localQueries = plan.localQueries;
+        this.localRequests = Collections.unmodifiableMap(new LinkedHashMap<>(localRequests));
+        this.rootCursors = plan.rootCursors;
+        this.passthroughs = plan.passthroughs;
+        this.forwardTarget = plan.forwardTarget;
+        this.forwardedRoots = plan.forwardedRoots;
+    }
+
+    private static Map<String, Passthrough> forwardedRoots(
+            Map<Sys, GraphQLQuery> localQueries,
+            List<QueryCursor.ConcatCursor> rootCursors,
+            Map<QueryCursor.ConcatCursor, Passthrough> passthroughs) {
+        if (localQueries.size() != 1 || rootCursors.isEmpty()) {
+            return null;
+        }
+        String url = localQueries.keySet().iterator().next().url();
+        Map<String, Passthrough> result = new LinkedHashMap<>();
+        for (QueryCursor.ConcatCursor root : rootCursors) {
+            Passthrough passthrough = passthroughs.get(root);
+            if (passthrough == null
+                    || !passthrough.getUrl().equals(url)
+                    || !passthrough.isRenamingRootOnly()
+                    || result.putIfAbsent(passthrough.getLocalField(), passthrough) != null) {
+                return null;
+            }
+        }
+        return Collections.unmodifiableMap(result);
+    }
+
+    public Map<Sys, GraphQLQuery> getLocalQueries() {
+        return localQueries;
+    }
+
+    /**
+     * The serialized request for the given endpoint or null if the endpoint is not queried via HTTP.
+     */
+    byte[] getLocalRequest(Sys endpoint) {
+        return localRequests.get(endpoint);
+    }
+
+    /**
+     * The cursors of the query roots in query order.
+     */
+    List<QueryCursor.ConcatCursor> getRootCursors() {
+        return rootCursors;
+    }
+
+    /**
+     * How the result of the given root is copied from its only endpoint, null if it has to be merged.
+     */
+    Passthrough getPassthrough(QueryCursor.ConcatCursor root) {
+        return passthroughs.get(root);
+    }
+
+    /**
+     * The endpoint that answers the whole query, i.e. every root and field maps to exactly one of its fields
+     * and only the roots have other names locally. Null if the local results have to be merged.
+     */
+    Sys getForwardTarget() {
+        return forwardTarget;
+    }
+
+    /**
+     * The roots of a forwarded query by their local names, in query order.
+     */
+    Map<String, Passthrough> getForwardedRoots() {
+        return forwardedRoots;
+    }
+
+    QueryPlan withLocalRequests(Map<Sys, byte[]> localRequests) {
+        return new QueryPlan(this, localRequests, arguments);
+    }
+
+    /**
+     * The simple arguments of the query the plan has been created for, in the order of {@link GraphQLQuery#simpleArguments()}.
+     */
+    List<GraphQLQuery.SimpleArgument> getParameters() {
+        return parameters;
+    }
+
+    /**
+     * Whether the local requests carry the values of the given arguments (of a query with the same shape).
+     */
+    boolean isBoundTo(List<GraphQLQuery.SimpleArgument> arguments) {
+        return this.arguments.equals(valueTexts(arguments));
+    }
+
+    /**
+     * Whether every local query is sent as a serialized request, i.e. the plan can be bound to other argument values.
+     */
+    boolean isBindable() {
+        return localRequests.keySet().containsAll(localQueries.keySet());
+    }
+
+    /**
+     * The same plan with the given local requests, which have been printed with the values of the given arguments.
+     */
+    QueryPlan bind(List<GraphQLQuery.SimpleArgument> arguments, Map<Sys, byte[]> localRequests) {
+        return new QueryPlan(this, localRequests, valueTexts(arguments));
+    }
+
+    private static List<String> valueTexts(List<GraphQLQuery.SimpleArgument> arguments) {
+        List<String> result = new ArrayList<>(arguments.size());
+        for (GraphQLQuery.SimpleArgument argument : arguments) {
+            result.add(argument.getValueText());
+        }
+        return Collections.unmodifiableList(result);
+    }
+}
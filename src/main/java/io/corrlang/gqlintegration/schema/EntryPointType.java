@@ -2,14 +2,21 @@ package io.corrlang.gqlintegration.schema;
 
 
 import io.corrlang.domain.MessageType;
+import no.hvl.past.names.Name;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
 
 public class EntryPointType {
 
     private String name;
     private final List<MessageType> fields = new ArrayList<>();
+    private final Map<String, Optional<MessageType>> fieldsByDisplayName = new HashMap<>();
+    private Function<Name, String> displayName;
 
     public EntryPointType(String name) {
         this.name = name;
@@ -17,6 +24,27 @@ public class EntryPointType {
 
     public void addMessage(MessageType field) {
         this.fields.add(field);
+        if (displayName != null) {
+            this.fieldsByDisplayName.putIfAbsent(displayName.apply(field.typeName()), Optional.of(field));
+        }
+    }
+
+    /**
+     * Indexes the messages by the given display names, messages that are added afterwards are indexed as well.
+     */
+    public void index(Function<Name, String> displayName) {
+        this.displayName = displayName;
+        this.fieldsByDisplayName.clear();
+        for (MessageType field : fields) {
+            this.fieldsByDisplayName.putIfAbsent(displayName.apply(field.typeName()), Optional.of(field));
+        }
+    }
+
+    /**
+     * The message with the given display name, requires {@link #index(Function)} to have been called.
+     */
+    public Optional<MessageType> getMessage(String displayName) {
+        return fieldsByDisplayName.getOrDefault(displayName, Optional.empty());
     }
 
     public String getName() {
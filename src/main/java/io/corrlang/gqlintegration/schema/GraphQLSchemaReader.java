@@ -25,15 +25,52 @@ import no.hvl.past.util.Pair;
 import java.util.*;
 import java.util.stream.Collectors;
 
+/**
+ * Converts graphql-java schemas into endpoints. All state of a conversion lives in a {@link Conversion},
+ * hence one reader can convert several schemas concurrently.
+ */
 public class GraphQLSchemaReader {
 
+    private final Universe universe;
+    // the most recent conversion, only kept for the getters below
+    private volatile Conversion lastConversion;
 
+    public GraphQLSchemaReader(Universe universe) {
+        this.universe = universe;
+    }
+
+    public GraphQLEndpoint convert(
+            String url,
+            Name resultName,
+            GraphQLSchema schema,
+            ObjectMapper om,
+            JsonFactory jsonFactory) throws GraphError, UnsupportedFeatureException {
+        Conversion conversion = new Conversion(new GraphBuilders(universe, false, false));
+        GraphQLEndpoint result = conversion.convert(url, resultName, schema, om, jsonFactory);
+        this.lastConversion = conversion;
+        return result;
+    }
+
+    /**
+     * The name of the query type of the most recently converted schema.
+     */
     public String getQueryTypeName() {
-        return this.queryTypeName;
+        return lastConversion == null ? "Query" : lastConversion.queryTypeName;
     }
 
+    /**
+     * The name of the mutation type of the most recently converted schema.
+     */
     public String getMutationTypeName() {
-        return this.mutationTypeName;
+        return lastConversion == null ? "Mutation" : lastConversion.mutationTypeName;
+    }
+
+    public List<FieldMult> getMultiplicities() {
+        return lastConversion == null ? Collections.emptyList() : lastConversion.multiplicities;
+    }
+
+    public Map<Name, String> getNameToText() {
+        return lastConversion == null ? Collections.emptyMap() : lastConversion.nameToText;
     }
 
     private static class MessageType {
@@ -65,394 +102,379 @@ public class GraphQLSchemaReader {
         }
     }
 
-    private final GraphBuilders builders;
-    private boolean listValued;
-    private boolean mandatory;
-    private Map<GraphQLType, Name> typeMapping;
-    private List<Triple> edges;
-    private Set<String> scalarTypes;
-    private List<FieldMult> multiplicities;
-    private Map<Name, EnumLiterals> enums;
-    private List<Pair<GraphQLArgument, Triple>> arguments;
-    private Map<Name, String> nameToText;
-    private List<MessageType> messageTypes;
-    private Set<GraphQLInputObjectType> inputTypes = new LinkedHashSet<>();
-    private String queryTypeName = "Query";
-    private String mutationTypeName = "Mutation";
+    private final class Conversion {
+
+        private final GraphBuilders builders;
+        private boolean listValued;
+        private boolean mandatory;
+        private Map<GraphQLType, Name> typeMapping;
+        // first edge per label, looked up for every multiplicity
+        private Map<Name, Triple> edgesByLabel;
+        private Set<String> scalarTypes;
+        private List<FieldMult> multiplicities;
+        private Map<Name, EnumLiterals> enums;
+        private List<Pair<GraphQLArgument, Triple>> arguments;
+        private Map<Name, String> nameToText;
+        private List<MessageType> messageTypes;
+        private Set<GraphQLInputObjectType> inputTypes = new LinkedHashSet<>();
+        private String queryTypeName = "Query";
+        private String mutationTypeName = "Mutation";
+
+        private Conversion(GraphBuilders builders) {
+            this.builders = builders;
+        }
 
-    public GraphQLSchemaReader(Universe universe) {
-        this.builders = new GraphBuilders(universe, false, false);
+        private GraphQLEndpoint convert(
+                String url,
+                Name resultName,
+                GraphQLSchema schema,
+                ObjectMapper om,
+                JsonFactory jsonFactory) throws GraphError, UnsupportedFeatureException {
+            this.typeMapping = new HashMap<>();
+            this.edgesByLabel = new HashMap<>();
+            this.scalarTypes = new HashSet<>();
+            this.multiplicities = new ArrayList<>();
+            this.arguments = new ArrayList<>();
+            this.listValued = false;
+            this.mandatory = false;
+            this.nameToText = new HashMap<>();
+            this.messageTypes = new ArrayList<>();
+            this.enums = new LinkedHashMap<>();
 
-    }
 
-    public GraphQLEndpoint convert(
-            String url,
-            Name resultName,
-            GraphQLSchema schema,
-            ObjectMapper om,
-            JsonFactory jsonFactory) throws GraphError, UnsupportedFeatureException {
-        this.typeMapping = new HashMap<>();
-        this.edges = new ArrayList<>();
-        this.scalarTypes = new HashSet<>();
-        this.multiplicities = new ArrayList<>();
-        this.arguments = new ArrayList<>();
-        this.listValued = false;
-        this.mandatory = false;
-        this.nameToText = new HashMap<>();
-        this.messageTypes = new ArrayList<>();
-        this.enums = new LinkedHashMap<>();
-
-
-        Set<GraphQLNamedType> types = schema.getAllTypesAsList().stream()
-                .filter(t -> schema.getQueryType() == null || !schema.getQueryType().equals(t))
-                .filter(t -> schema.getMutationType() == null || !schema.getMutationType().equals(t))
-                .filter(t -> schema.getSubscriptionType() == null || !schema.getSubscriptionType().equals(t))
-                .filter(t -> !t.getName().startsWith(IntrospectionQuery.GRAPHQL_META_INFO_PREFIX))
-                .collect(Collectors.toSet());
-
-        List<GraphQLObjectType> complexTypes = new ArrayList<>();
-
-        // Nodes for all types
-        for (GraphQLNamedType type : types) {
-            Name typeName = createName(type);
-            builders.node(typeName);
-            this.typeMapping.put(type, typeName);
-
-            if (type instanceof GraphQLObjectType) {
-                complexTypes.add((GraphQLObjectType) type);
-            }
+            Set<GraphQLNamedType> types = schema.getAllTypesAsList().stream()
+                    .filter(t -> schema.getQueryType() == null || !schema.getQueryType().equals(t))
+                    .filter(t -> schema.getMutationType() == null || !schema.getMutationType().equals(t))
+                    .filter(t -> schema.getSubscriptionType() == null || !schema.getSubscriptionType().equals(t))
+                    .filter(t -> !t.getName().startsWith(IntrospectionQuery.GRAPHQL_META_INFO_PREFIX))
+                    .collect(Collectors.toSet());
 
-            if (type instanceof GraphQLScalarType) {
-                scalarTypes.add(type.getName());
-            }
+            List<GraphQLObjectType> complexTypes = new ArrayList<>();
+
+            // Nodes for all types
+            for (GraphQLNamedType type : types) {
+                Name typeName = createName(type);
+                builders.node(typeName);
+                this.typeMapping.put(type, typeName);
 
-            if (type instanceof GraphQLEnumType) {
-                GraphQLEnumType enm = (GraphQLEnumType) type;
-                List<Name> result = new ArrayList<>();
-                for (GraphQLEnumValueDefinition literal : enm.getValues()) {
-                    result.add(Name.identifier(literal.getName()));
+                if (type instanceof GraphQLObjectType) {
+                    complexTypes.add((GraphQLObjectType) type);
                 }
-                this.enums.put(typeName, new EnumLiterals(result));
-            }
 
+                if (type instanceof GraphQLScalarType) {
+                    scalarTypes.add(type.getName());
+                }
 
-            if (type instanceof GraphQLInputObjectType) {
-                GraphQLInputObjectType inputType = (GraphQLInputObjectType) type;
-                this.inputTypes.add(inputType);
-            }
+                if (type instanceof GraphQLEnumType) {
+                    GraphQLEnumType enm = (GraphQLEnumType) type;
+                    List<Name> result = new ArrayList<>();
+                    for (GraphQLEnumValueDefinition literal : enm.getValues()) {
+                        result.add(Name.identifier(literal.getName()));
+                    }
+                    this.enums.put(typeName, new EnumLiterals(result));
+                }
 
-            // TODO unions
-            if (type instanceof GraphQLUnionType) {
-                throw new UnsupportedFeatureException("Union types such as '" + type.getName() + "' are currently not supported by the GraphQL plugin!");
-            }
 
+                if (type instanceof GraphQLInputObjectType) {
+                    GraphQLInputObjectType inputType = (GraphQLInputObjectType) type;
+                    this.inputTypes.add(inputType);
+                }
 
-            // TODO interfaces
-            if (type instanceof GraphQLInterfaceType) {
-                throw new UnsupportedFeatureException("Interfaces such as '" + type.getName() + "' are currently not supported by the GraphQL plugin!");
-            }
+                // TODO unions
+                if (type instanceof GraphQLUnionType) {
+                    throw new UnsupportedFeatureException("Union types such as '" + type.getName() + "' are currently not supported by the GraphQL plugin!");
+                }
 
-        }
 
-        // Edges for all fields
-        for (GraphQLObjectType object : complexTypes) {
-            for (GraphQLFieldDefinition field : object.getFieldDefinitions()) {
-                convertField(field, object);
-            }
-        }
+                // TODO interfaces
+                if (type instanceof GraphQLInterfaceType) {
+                    throw new UnsupportedFeatureException("Interfaces such as '" + type.getName() + "' are currently not supported by the GraphQL plugin!");
+                }
 
-        for (GraphQLInputObjectType inputType : inputTypes) {
-            for (GraphQLInputObjectField field : inputType.getFieldDefinitions()) {
-                convertField(field, inputType);
             }
-        }
 
-        if (schema.getQueryType() != null) {
-            if (!this.queryTypeName.equals(schema.getQueryType().getName())) {
-                this.queryTypeName = schema.getQueryType().getName();
+            // Edges for all fields
+            for (GraphQLObjectType object : complexTypes) {
+                for (GraphQLFieldDefinition field : object.getFieldDefinitions()) {
+                    convertField(field, object);
+                }
             }
-            builders.node(queryTypeName);
-            for (GraphQLFieldDefinition querOp : schema.getQueryType().getFieldDefinitions()) {
-                convertMessage(querOp, false, new MessageContainer(Name.identifier(schema.getQueryType().getName())));
+
+            for (GraphQLInputObjectType inputType : inputTypes) {
+                for (GraphQLInputObjectField field : inputType.getFieldDefinitions()) {
+                    convertField(field, inputType);
+                }
             }
-        }
 
-        if (schema.getMutationType() != null) {
-            if (!this.mutationTypeName.equals(schema.getMutationType().getName())) {
-                this.mutationTypeName = schema.getMutationType().getName();
+            if (schema.getQueryType() != null) {
+                if (!this.queryTypeName.equals(schema.getQueryType().getName())) {
+                    this.queryTypeName = schema.getQueryType().getName();
+                }
+                builders.node(queryTypeName);
+                for (GraphQLFieldDefinition querOp : schema.getQueryType().getFieldDefinitions()) {
+                    convertMessage(querOp, false, new MessageContainer(Name.identifier(schema.getQueryType().getName())));
+                }
             }
-            builders.node(mutationTypeName);
-            for (GraphQLFieldDefinition querOp : schema.getMutationType().getFieldDefinitions()) {
-                convertMessage(querOp, true, new MessageContainer(Name.identifier(schema.getMutationType().getName())));
+
+            if (schema.getMutationType() != null) {
+                if (!this.mutationTypeName.equals(schema.getMutationType().getName())) {
+                    this.mutationTypeName = schema.getMutationType().getName();
+                }
+                builders.node(mutationTypeName);
+                for (GraphQLFieldDefinition querOp : schema.getMutationType().getFieldDefinitions()) {
+                    convertMessage(querOp, true, new MessageContainer(Name.identifier(schema.getMutationType().getName())));
+                }
             }
-        }
 
-        if (schema.getSubscriptionType() != null && !schema.getSubscriptionType().getFieldDefinitions().isEmpty()) {
-            throw new UnsupportedFeatureException("Subscriptions are currently not supported by the GraphQL plugin!");
-        }
+            if (schema.getSubscriptionType() != null && !schema.getSubscriptionType().getFieldDefinitions().isEmpty()) {
+                throw new UnsupportedFeatureException("Subscriptions are currently not supported by the GraphQL plugin!");
+            }
 
 
-        builders.graph(resultName.absolute());
+            builders.graph(resultName.absolute());
 
-        // post-processing (i.e. adding diagrams
+            // post-processing (i.e. adding diagrams
 
-        for (String scalarType : scalarTypes) {
-            handleScalarType(scalarType);
-        }
+            for (String scalarType : scalarTypes) {
+                handleScalarType(scalarType);
+            }
 
-        for (FieldMult multiplicity : this.multiplicities) {
-            if (multiplicity.isListValued()) {
-                // add ordered
-                this.edges.stream().filter(t -> t.getLabel().equals(multiplicity.getElementName())).findFirst().ifPresent(edge -> {
+            for (FieldMult multiplicity : this.multiplicities) {
+                Triple edge = this.edgesByLabel.get(multiplicity.getElementName());
+                if (edge == null) {
+                    continue;
+                }
+                if (multiplicity.isListValued()) {
+                    // add ordered
                     builders.startDiagram(Ordered.getInstance());
                     builders.map(Universe.ARROW_SRC_NAME, edge.getSource());
                     builders.map(Universe.ARROW_LBL_NAME, edge.getLabel());
                     builders.map(Universe.ARROW_TRG_NAME, edge.getTarget());
                     builders.endDiagram(Ordered.getInstance().getName().appliedTo(multiplicity.getElementName()));
-                });
-            } else if (multiplicity.isMandatory()) {
-                // add 1..1
-                this.edges.stream().filter(t -> t.getLabel().equals(multiplicity.getElementName())).findFirst().ifPresent(edge -> {
-                    GraphPredicate pred = TargetMultiplicity.getInstance(1, 1);
-                    builders.startDiagram(pred);
-                    builders.map(Universe.ARROW_SRC_NAME, edge.getSource());
-                    builders.map(Universe.ARROW_LBL_NAME, edge.getLabel());
-                    builders.map(Universe.ARROW_TRG_NAME, edge.getTarget());
-                    builders.endDiagram(pred.getName().appliedTo(multiplicity.getElementName()));
-                });
-            } else {
-                // add 0..1
-                this.edges.stream().filter(t -> t.getLabel().equals(multiplicity.getElementName())).findFirst().ifPresent(edge -> {
-                    GraphPredicate pred = TargetMultiplicity.getInstance(0, 1);
+                } else {
+                    // add 1..1 or 0..1
+                    GraphPredicate pred = TargetMultiplicity.getInstance(multiplicity.isMandatory() ? 1 : 0, 1);
                     builders.startDiagram(pred);
                     builders.map(Universe.ARROW_SRC_NAME, edge.getSource());
                     builders.map(Universe.ARROW_LBL_NAME, edge.getLabel());
                     builders.map(Universe.ARROW_TRG_NAME, edge.getTarget());
                     builders.endDiagram(pred.getName().appliedTo(multiplicity.getElementName()));
-                });
+                }
             }
-        }
-
-        for (Map.Entry<Name, EnumLiterals> enm : enums.entrySet()) {
-            builders.startDiagram(EnumValue.getInstance(enm.getValue().getLiterals()));
-            builders.map(Universe.ONE_NODE_THE_NODE, enm.getKey());
-            builders.endDiagram(Name.identifier("Enum").appliedTo(enm.getKey()));
-        }
 
-        for (GraphQLInputObjectType in : inputTypes) {
-            builders.startDiagram(InputType.getInstance());
-            builders.map(Universe.ONE_NODE_THE_NODE, typeMapping.get(in));
-            builders.endDiagram(Name.identifier("InputType").appliedTo(Name.identifier(in.getName())));
-        }
-
-        for (Pair<GraphQLArgument, Triple> a : arguments) {
-            this.convertArgument(a.getFirst(), a.getSecond());
-        }
+            for (Map.Entry<Name, EnumLiterals> enm : enums.entrySet()) {
+                builders.startDiagram(EnumValue.getInstance(enm.getValue().getLiterals()));
+                builders.map(Universe.ONE_NODE_THE_NODE, enm.getKey());
+                builders.endDiagram(Name.identifier("Enum").appliedTo(enm.getKey()));
+            }
 
-        builders.sketch(resultName);
-        Sketch result = builders.getResult(Sketch.class);
+            for (GraphQLInputObjectType in : inputTypes) {
+                builders.startDiagram(InputType.getInstance());
+                builders.map(Universe.ONE_NODE_THE_NODE, typeMapping.get(in));
+                builders.endDiagram(Name.identifier("InputType").appliedTo(Name.identifier(in.getName())));
+            }
 
+            for (Pair<GraphQLArgument, Triple> a : arguments) {
+                this.convertArgument(a.getFirst(), a.getSecond());
+            }
 
-        EntryPointType queries = new EntryPointType("Query");
-        EntryPointType mutations = new EntryPointType("Mutation");
-        if (schema.getQueryType() != null) {
-            queries.setName(schema.getQueryType().getName());
-        }
-        if (schema.getMutationType() != null) {
-            mutations.setName(schema.getMutationType().getName());
-        }
-        Map<Name, io.corrlang.domain.MessageType> messageTypeMap = new HashMap<>();
+            builders.sketch(resultName);
+            Sketch result = builders.getResult(Sketch.class);
 
 
-        for (MessageType msgType : this.messageTypes) {
-            List<MessageArgument> args = new ArrayList<>();
-            List<MessageArgument> output = new ArrayList<>();
-            io.corrlang.domain.MessageType msg;
-            if (msgType.hasSideEffect) {
-                msg = new io.corrlang.domain.MessageType(msgType.name, args, output, msgType.container , true);
-                mutations.addMessage(msg);
-            } else {
-                msg = new io.corrlang.domain.MessageType(msgType.name, args, output, msgType.container, false);
-                queries.addMessage(msg);
+            EntryPointType queries = new EntryPointType("Query");
+            EntryPointType mutations = new EntryPointType("Mutation");
+            if (schema.getQueryType() != null) {
+                queries.setName(schema.getQueryType().getName());
+            }
+            if (schema.getMutationType() != null) {
+                mutations.setName(schema.getMutationType().getName());
             }
-            messageTypeMap.put(msgType.name, msg);
-            for (Triple t : msgType.arguments) {
-                args.add(new MessageArgument(msg, t, args.size(), false));
+            Map<Name, io.corrlang.domain.MessageType> messageTypeMap = new HashMap<>();
+
+
+            for (MessageType msgType : this.messageTypes) {
+                List<MessageArgument> args = new ArrayList<>();
+                List<MessageArgument> output = new ArrayList<>();
+                io.corrlang.domain.MessageType msg;
+                if (msgType.hasSideEffect) {
+                    msg = new io.corrlang.domain.MessageType(msgType.name, args, output, msgType.container , true);
+                    mutations.addMessage(msg);
+                } else {
+                    msg = new io.corrlang.domain.MessageType(msgType.name, args, output, msgType.container, false);
+                    queries.addMessage(msg);
+                }
+                messageTypeMap.put(msgType.name, msg);
+                for (Triple t : msgType.arguments) {
+                    args.add(new MessageArgument(msg, t, args.size(), false));
+                }
+                output.add(new MessageArgument(msg, msgType.returnType, 0, true));
             }
-            output.add(new MessageArgument(msg, msgType.returnType, 0, true));
+
+            return new GraphQLEndpoint(
+                    url,
+                    result,
+                    nameToText,
+                    messageTypeMap,
+                    multiplicities,
+                    queries,
+                    mutations,
+                    om,
+                    jsonFactory
+            );
         }
 
-        return new GraphQLEndpoint(
-                url,
-                result,
-                nameToText,
-                messageTypeMap,
-                multiplicities,
-                queries,
-                mutations,
-                om,
-                jsonFactory
-        );
-    }
 
 
 
+        private void convertMessage(GraphQLFieldDefinition op, boolean hasSideEffect, MessageContainer owner) {
+            // Making a node for the message type
+            Name msgName = Name.identifier(op.getName()).prefixWith(owner.getTypeName());
+            List<Triple> msgArgs = new ArrayList<>();
+            builders.node(msgName);
 
-    private void convertMessage(GraphQLFieldDefinition op, boolean hasSideEffect, MessageContainer owner) {
-        // Making a node for the message type
-        Name msgName = Name.identifier(op.getName()).prefixWith(owner.getTypeName());
-        List<Triple> msgArgs = new ArrayList<>();
-        builders.node(msgName);
+            // Adding all args as message input edges
+            for (GraphQLArgument arg : op.getArguments()) {
+                this.mandatory = false;
+                this.listValued = false;
+                Name argumentName = Name.identifier(arg.getName()).prefixWith(msgName);
+                Name resultType = convertResultType(arg.getType());
+                Triple edge = Triple.edge(msgName, argumentName, resultType);
+                msgArgs.add(edge);
+                builders.edge(msgName, argumentName, resultType);
+                this.edgesByLabel.putIfAbsent(argumentName, edge);
+                this.multiplicities.add(new FieldMult(argumentName, listValued, mandatory));
+            }
 
-        // Adding all args as message input edges
-        for (GraphQLArgument arg : op.getArguments()) {
+            // Adding the return type as a message output egde
             this.mandatory = false;
             this.listValued = false;
-            Name argumentName = Name.identifier(arg.getName()).prefixWith(msgName);
-            Name resultType = convertResultType(arg.getType());
-            Triple edge = Triple.edge(msgName, argumentName, resultType);
-            msgArgs.add(edge);
-            builders.edge(msgName, argumentName, resultType);
-            this.edges.add(edge);
-            this.multiplicities.add(new FieldMult(argumentName, listValued, mandatory));
-        }
-
-        // Adding the return type as a message output egde
-        this.mandatory = false;
-        this.listValued = false;
-        Name returnType = convertResultType(op.getType());
-        // TODO MAGIC NAMES: replace this one
-        Name returnTypeEdgeLabel = Name.identifier("result").prefixWith(msgName);
-        this.nameToText.put(returnTypeEdgeLabel, op.getName());
-        this.nameToText.put(msgName, op.getName());
-        builders.edge(msgName, returnTypeEdgeLabel, returnType);
-        this.edges.add(Triple.edge(msgName, returnTypeEdgeLabel, returnType));
+            Name returnType = convertResultType(op.getType());
+            // TODO MAGIC NAMES: replace this one
+            Name returnTypeEdgeLabel = Name.identifier("result").prefixWith(msgName);
+            this.nameToText.put(returnTypeEdgeLabel, op.getName());
+            this.nameToText.put(msgName, op.getName());
+            builders.edge(msgName, returnTypeEdgeLabel, returnType);
+            this.edgesByLabel.putIfAbsent(returnTypeEdgeLabel, Triple.edge(msgName, returnTypeEdgeLabel, returnType));
 
-        this.multiplicities.add(new FieldMult(returnTypeEdgeLabel, listValued, mandatory));
+            this.multiplicities.add(new FieldMult(returnTypeEdgeLabel, listValued, mandatory));
 
-        this.messageTypes.add(new MessageType(msgName, hasSideEffect, msgArgs, Triple.edge(msgName, returnTypeEdgeLabel, returnType), owner));
-    }
+            this.messageTypes.add(new MessageType(msgName, hasSideEffect, msgArgs, Triple.edge(msgName, returnTypeEdgeLabel, returnType), owner));
+        }
 
-    private void handleScalarType(String scalarType) {
-        this.nameToText.put(Name.identifier(scalarType), scalarType);
-        switch (scalarType) {
-            case "Int":
-                builders.startDiagram(IntDT.getInstance());
-                builders.map(Universe.ONE_NODE_THE_NODE, Name.identifier(scalarType));
-                builders.endDiagram(Name.identifier(scalarType + " scalar type"));
-                break;
-            case "Float":
-                builders.startDiagram(FloatDT.getInstance());
-                builders.map(Universe.ONE_NODE_THE_NODE, Name.identifier(scalarType));
-                builders.endDiagram(Name.identifier(scalarType + " scalar type"));
-                break;
-            case "Boolean":
-                builders.startDiagram(BoolDT.getInstance());
-                builders.map(Universe.ONE_NODE_THE_NODE, Name.identifier(scalarType));
-                builders.endDiagram(Name.identifier(scalarType + " scalar type"));
-                break;
-            case "String":
-                builders.startDiagram(StringDT.getInstance());
-                builders.map(Universe.ONE_NODE_THE_NODE, Name.identifier(scalarType));
-                builders.endDiagram(Name.identifier(scalarType + " scalar type"));
-                break;
-            case "ID":
-            default:
-                builders.startDiagram(DataTypePredicate.getInstance());
-                builders.map(Universe.ONE_NODE_THE_NODE, Name.identifier(scalarType));
-                builders.endDiagram(Name.identifier(scalarType + " scalar type"));
-                break;
+        private void handleScalarType(String scalarType) {
+            this.nameToText.put(Name.identifier(scalarType), scalarType);
+            switch (scalarType) {
+                case "Int":
+                    builders.startDiagram(IntDT.getInstance());
+                    builders.map(Universe.ONE_NODE_THE_NODE, Name.identifier(scalarType));
+                    builders.endDiagram(Name.identifier(scalarType + " scalar type"));
+                    break;
+                case "Float":
+                    builders.startDiagram(FloatDT.getInstance());
+                    builders.map(Universe.ONE_NODE_THE_NODE, Name.identifier(scalarType));
+                    builders.endDiagram(Name.identifier(scalarType + " scalar type"));
+                    break;
+                case "Boolean":
+                    builders.startDiagram(BoolDT.getInstance());
+                    builders.map(Universe.ONE_NODE_THE_NODE, Name.identifier(scalarType));
+                    builders.endDiagram(Name.identifier(scalarType + " scalar type"));
+                    break;
+                case "String":
+                    builders.startDiagram(StringDT.getInstance());
+                    builders.map(Universe.ONE_NODE_THE_NODE, Name.identifier(scalarType));
+                    builders.endDiagram(Name.identifier(scalarType + " scalar type"));
+                    break;
+                case "ID":
+                default:
+                    builders.startDiagram(DataTypePredicate.getInstance());
+                    builders.map(Universe.ONE_NODE_THE_NODE, Name.identifier(scalarType));
+                    builders.endDiagram(Name.identifier(scalarType + " scalar type"));
+                    break;
 
+            }
         }
-    }
 
-    private void convertField(GraphQLInputObjectField field, GraphQLInputObjectType owner) {
-        this.mandatory = false;
-        this.listValued = false;
+        private void convertField(GraphQLInputObjectField field, GraphQLInputObjectType owner) {
+            this.mandatory = false;
+            this.listValued = false;
 
-        Name fieldName = createName(owner, field);
+            Name fieldName = createName(owner, field);
 
-        GraphQLInputType resultType = field.getType();
-        Name targetName = this.convertResultType(resultType);
+            GraphQLInputType resultType = field.getType();
+            Name targetName = this.convertResultType(resultType);
 
-        final Triple edge = Triple.edge(this.typeMapping.get(owner), fieldName, targetName);
-        this.builders.edge(this.typeMapping.get(owner), fieldName, targetName); // TODO builder method that accepts an edge
-        this.edges.add(edge);
-        this.multiplicities.add(new FieldMult(fieldName, listValued, mandatory));
+            final Triple edge = Triple.edge(this.typeMapping.get(owner), fieldName, targetName);
+            this.builders.edge(this.typeMapping.get(owner), fieldName, targetName); // TODO builder method that accepts an edge
+            this.edgesByLabel.putIfAbsent(fieldName, edge);
+            this.multiplicities.add(new FieldMult(fieldName, listValued, mandatory));
 
-    }
+        }
 
 
-    private void convertField(final GraphQLFieldDefinition fieldDefinition, final GraphQLType owner) {
-        this.mandatory = false;
-        this.listValued = false;
+        private void convertField(final GraphQLFieldDefinition fieldDefinition, final GraphQLType owner) {
+            this.mandatory = false;
+            this.listValued = false;
 
-        Name fieldName = createName(owner, fieldDefinition);
+            Name fieldName = createName(owner, fieldDefinition);
 
-        GraphQLOutputType resultType = fieldDefinition.getType();
-        Name targetName = this.convertResultType(resultType);
+            GraphQLOutputType resultType = fieldDefinition.getType();
+            Name targetName = this.convertResultType(resultType);
 
-        final Triple edge = Triple.edge(this.typeMapping.get(owner), fieldName, targetName);
-        this.builders.edge(this.typeMapping.get(owner), fieldName, targetName); // TODO builder method that accepts an edge
-        this.edges.add(edge);
-        this.multiplicities.add(new FieldMult(fieldName, listValued, mandatory));
+            final Triple edge = Triple.edge(this.typeMapping.get(owner), fieldName, targetName);
+            this.builders.edge(this.typeMapping.get(owner), fieldName, targetName); // TODO builder method that accepts an edge
+            this.edgesByLabel.putIfAbsent(fieldName, edge);
+            this.multiplicities.add(new FieldMult(fieldName, listValued, mandatory));
 
 
 
-        for (GraphQLArgument argument : fieldDefinition.getArguments()) {
-            this.arguments.add(new Pair<>(argument, edge));
+            for (GraphQLArgument argument : fieldDefinition.getArguments()) {
+                this.arguments.add(new Pair<>(argument, edge));
+            }
         }
-    }
 
-    private void convertArgument(GraphQLArgument argument, Triple edge) {
-        String argumentName = argument.getName();
-        this.mandatory = false;
-        this.listValued = false;
-        Name resultType = convertResultType(argument.getType());
-        builders.startDiagram(new FieldArgument(argumentName, resultType, listValued, mandatory));
-        builders.map(Universe.ARROW_SRC_NAME, edge.getSource());
-        builders.map(Universe.ARROW_LBL_NAME, edge.getLabel());
-        builders.map(Universe.ARROW_TRG_NAME, edge.getTarget());
-        builders.endDiagram(Name.identifier("@arg(" + argumentName + " : " + resultType.print(PrintingStrategy.IGNORE_PREFIX) + ")"));
-    }
-
-
-    public Name convertResultType(GraphQLType resultType) {
-        if (GraphQLNonNull.class.isAssignableFrom(resultType.getClass())) {
-            this.mandatory = true;
-            return convertResultType((GraphQLType) resultType.getChildren().get(0));
-        } else if (GraphQLList.class.isAssignableFrom(resultType.getClass())) {
-            this.listValued = true;
-            return convertResultType((GraphQLType) resultType.getChildren().get(0));
-        } else {
-            return typeMapping.get(resultType);
+        private void convertArgument(GraphQLArgument argument, Triple edge) {
+            String argumentName = argument.getName();
+            this.mandatory = false;
+            this.listValued = false;
+            Name resultType = convertResultType(argument.getType());
+            builders.startDiagram(new FieldArgument(argumentName, resultType, listValued, mandatory));
+            builders.map(Universe.ARROW_SRC_NAME, edge.getSource());
+            builders.map(Universe.ARROW_LBL_NAME, edge.getLabel());
+            builders.map(Universe.ARROW_TRG_NAME, edge.getTarget());
+            builders.endDiagram(Name.identifier("@arg(" + argumentName + " : " + resultType.print(PrintingStrategy.IGNORE_PREFIX) + ")"));
         }
-    }
 
-    public List<FieldMult> getMultiplicities() {
-        return multiplicities;
-    }
 
-    private Name createName(GraphQLInputObjectType owner, GraphQLInputObjectField field) {
-        Name name = Name.identifier(field.getName()).prefixWith(this.typeMapping.get(owner));
-        this.nameToText.put(name, field.getName());
-        return name;
+        private Name convertResultType(GraphQLType resultType) {
+            if (GraphQLNonNull.class.isAssignableFrom(resultType.getClass())) {
+                this.mandatory = true;
+                return convertResultType((GraphQLType) resultType.getChildren().get(0));
+            } else if (GraphQLList.class.isAssignableFrom(resultType.getClass())) {
+                this.listValued = true;
+                return convertResultType((GraphQLType) resultType.getChildren().get(0));
+            } else {
+                return typeMapping.get(resultType);
+            }
+        }
 
-    }
+        private Name createName(GraphQLInputObjectType owner, GraphQLInputObjectField field) {
+            Name name = Name.identifier(field.getName()).prefixWith(this.typeMapping.get(owner));
+            this.nameToText.put(name, field.getName());
+            return name;
 
-    private Name createName(GraphQLType owner, GraphQLFieldDefinition fieldDefinition) {
-        Name name = Name.identifier(fieldDefinition.getName()).prefixWith(this.typeMapping.get(owner));
-        this.nameToText.put(name, fieldDefinition.getName());
-        return name;
-    }
+        }
 
-    private Name createName(GraphQLNamedType type) {
-        Identifier identifier = Name.identifier(type.getName());
-        this.nameToText.put(identifier, type.getName());
-        return identifier;
-    }
+        private Name createName(GraphQLType owner, GraphQLFieldDefinition fieldDefinition) {
+            Name name = Name.identifier(fieldDefinition.getName()).prefixWith(this.typeMapping.get(owner));
+            this.nameToText.put(name, fieldDefinition.getName());
+            return name;
+        }
 
-    public Map<Name, String> getNameToText() {
-        return nameToText;
+        private Name createName(GraphQLNamedType type) {
+            Identifier identifier = Name.identifier(type.getName());
+            this.nameToText.put(identifier, type.getName());
+            return identifier;
+        }
     }
 }
@@ -1,6 +1,24 @@
 package io.corrlang.gqlintegration.schema;
 
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Sets;
+import graphql.Directives;
+import graphql.Scalars;
+import graphql.schema.GraphQLArgument;
+import graphql.schema.GraphQLEnumType;
+import graphql.schema.GraphQLFieldDefinition;
+import graphql.schema.GraphQLInputObjectField;
+import graphql.schema.GraphQLInputObjectType;
+import graphql.schema.GraphQLInputType;
+import graphql.schema.GraphQLList;
+import graphql.schema.GraphQLNamedType;
+import graphql.schema.GraphQLNonNull;
+import graphql.schema.GraphQLObjectType;
+import graphql.schema.GraphQLOutputType;
+import graphql.schema.GraphQLScalarType;
+import graphql.schema.GraphQLSchema;
+import graphql.schema.GraphQLType;
+import graphql.schema.GraphQLTypeReference;
 import io.corrlang.domain.MessageArgument;
 import io.corrlang.domain.MessageType;
 import io.corrlang.domain.Sys;
@@ -34,6 +52,9 @@ public class GraphQLSchemaWriter implements Visitor {
             Name.identifier("Float"
             ));
 
+    // what BufferedWriter.newLine() used to write
+    private static final String NEW_LINE = System.lineSeparator();
+
     private static final Set<Class<?>> SCALAR_PREDICATES = Sets.newHashSet(
             IntDT.class,
             StringDT.class,
@@ -42,6 +63,14 @@ public class GraphQLSchemaWriter implements Visitor {
             DataTypePredicate.class
     );
 
+    private static final Map<String, GraphQLScalarType> BUILTIN_SCALAR_TYPES = ImmutableMap.of(
+            "ID", Scalars.GraphQLID,
+            "String", Scalars.GraphQLString,
+            "Boolean", Scalars.GraphQLBoolean,
+            "Int", Scalars.GraphQLInt,
+            "Float", Scalars.GraphQLFloat
+    );
+
     public List<FieldMult> getMults() {
         List<FieldMult> result = new ArrayList<>();
         for (Container c : this.typeMap.values()) {
@@ -75,24 +104,36 @@ public class GraphQLSchemaWriter implements Visitor {
 
         private final Name node;
         private final List<ContainerChild> fields;
+        // fields by edge label, such that diagrams find their field without scanning the type
+        private final Map<Name, List<ContainerChild>> fieldsByLabel;
         private String displayName;
         private ContainerType type;
 
         public Container(Name node) {
             this.node = node;
             this.fields = new ArrayList<>();
+            this.fieldsByLabel = new HashMap<>();
             this.displayName = node.print(PrintingStrategy.IGNORE_PREFIX);
             this.type = ContainerType.OBJECT;
         }
 
-        private void print(BufferedWriter writer, Map<Name, Container> typeMap, Map<Name, String> nameToText) throws IOException {
+        private void addField(ContainerChild field) {
+            fields.add(field);
+            fieldsByLabel.computeIfAbsent(field.edgeLabel, l -> new ArrayList<>(1)).add(field);
+        }
+
+        private List<ContainerChild> fields(Name edgeLabel) {
+            return fieldsByLabel.getOrDefault(edgeLabel, Collections.emptyList());
+        }
+
+        private void print(Appendable writer, Map<Name, Container> typeMap, Map<Name, String> nameToText) throws IOException {
             if (type != ContainerType.HIDDEN) {
                 nameToText.put(node, displayName);
                 switch (type) {
                     case SCALAR:
                         writer.append("scalar ");
                         writer.append(displayName);
-                        writer.newLine();
+                        writer.append(NEW_LINE);
                         break;
                     case OBJECT:
                         writer.append("type ");
@@ -100,7 +141,7 @@ public class GraphQLSchemaWriter implements Visitor {
                         writer.append(" {\n");
                         for (ContainerChild f : fields) {
                             f.print(writer,typeMap, nameToText);
-                            writer.newLine();
+                            writer.append(NEW_LINE);
                         }
                         writer.append("}\n");
                         break;
@@ -110,8 +151,8 @@ public class GraphQLSchemaWriter implements Visitor {
                         writer.append(displayName);
                         writer.append(" {\n");
                         for (ContainerChild f : fields) {
-                            f.print(writer,typeMap, new HashMap<>());
-                            writer.newLine();
+                            f.print(writer,typeMap, null);
+                            writer.append(NEW_LINE);
                         }
                         writer.append("}\n");
                         break;
@@ -121,8 +162,8 @@ public class GraphQLSchemaWriter implements Visitor {
                         writer.append(displayName);
                         writer.append(" {\n");
                         for (ContainerChild f : fields) {
-                            f.print(writer,typeMap, new HashMap<>());
-                            writer.newLine();
+                            f.print(writer,typeMap, null);
+                            writer.append(NEW_LINE);
                         }
                         writer.append("}\n");
                         break;
@@ -163,8 +204,10 @@ public class GraphQLSchemaWriter implements Visitor {
             this.arguments = new ArrayList<>();
         }
 
-        void print(BufferedWriter writer, Map<Name, Container> typeMap, Map<Name, String> nameToText) throws IOException {
-            nameToText.put(edgeLabel, displayName);
+        void print(Appendable writer, Map<Name, Container> typeMap, Map<Name, String> nameToText) throws IOException {
+            if (nameToText != null) {
+                nameToText.put(edgeLabel, displayName);
+            }
             writer.append("   ");
             writer.append(displayName);
             if (!arguments.isEmpty()) {
@@ -309,7 +352,7 @@ public class GraphQLSchemaWriter implements Visitor {
 
         if (!ignoreElementsNow) {
             if (typeMap.containsKey(triple.getSource())) {
-                typeMap.get(triple.getSource()).fields.add(new ContainerChild(triple.getSource(), triple.getLabel(), triple.getTarget()));
+                typeMap.get(triple.getSource()).addField(new ContainerChild(triple.getSource(), triple.getLabel(), triple.getTarget()));
             }
         }
     }
@@ -345,7 +388,7 @@ public class GraphQLSchemaWriter implements Visitor {
                 String preResult = message.typeName().print(PrintingStrategy.IGNORE_PREFIX);
                 preResult = preResult.substring(preResult.indexOf('.') + 1);
                 child.displayName = preResult;
-                mutationContainer.fields.add(child);
+                mutationContainer.addField(child);
                 return child;
             } else {
                 if (queryContainer == null) {
@@ -355,7 +398,7 @@ public class GraphQLSchemaWriter implements Visitor {
                 String preResult = message.typeName().print(PrintingStrategy.IGNORE_PREFIX);
                 preResult = preResult.substring(preResult.indexOf('.') + 1);
                 child.displayName = preResult;
-                queryContainer.fields.add(child);
+                queryContainer.addField(child);
                 return child;
             }
     }
@@ -410,25 +453,22 @@ public class GraphQLSchemaWriter implements Visitor {
                 if (multiplicity.getLowerBound() == 1 && multiplicity.getUpperBound() == 1) {
                     diagram.edgeBinding().ifPresent(t -> {
                         if (typeMap.containsKey(t.getSource())) {
-                            this.typeMap.get(t.getSource()).fields.stream().filter(f -> f.edgeLabel.equals(t.getLabel()))
-                                    .forEach(f -> {
-                                        f.mandatory = true;
-                                        f.setValued = false;
-                                    });
+                            this.typeMap.get(t.getSource()).fields(t.getLabel()).forEach(f -> {
+                                f.mandatory = true;
+                                f.setValued = false;
+                            });
                         }
                     });
                 } else if (multiplicity.getLowerBound() == 0 && multiplicity.getUpperBound() == 1) {
                     diagram.edgeBinding().ifPresent(t -> {
                         if (typeMap.containsKey(t.getSource())) {
-                            this.typeMap.get(t.getSource()).fields.stream().filter(f -> f.edgeLabel.equals(t.getLabel()))
-                                    .forEach(f -> f.setValued = false);
+                            this.typeMap.get(t.getSource()).fields(t.getLabel()).forEach(f -> f.setValued = false);
                         }
                     });
                 }
             } else if (FieldArgument.class.isAssignableFrom(graphFormula.getClass())) {
                 diagram.edgeBinding().ifPresent(t -> {
-                    this.typeMap.get(t.getSource()).fields.stream().filter(f -> f.edgeLabel.equals(t.getLabel()))
-                            .forEach(f -> f.addArgument((FieldArgument) graphFormula));
+                    this.typeMap.get(t.getSource()).fields(t.getLabel()).forEach(f -> f.addArgument((FieldArgument) graphFormula));
                 });
 
             } else if (EnumValue.class.isAssignableFrom(graphFormula.getClass())) {
@@ -437,7 +477,7 @@ public class GraphQLSchemaWriter implements Visitor {
                     Container container = typeMap.get(typ);
                     container.type = ContainerType.ENUM;
                     for (Name literal : enumeration.literals()) {
-                        container.fields.add(new ContainerChild(literal, container.node));
+                        container.addField(new ContainerChild(literal, container.node));
                     }
                 });
             } else if (InputType.class.isAssignableFrom(graphFormula.getClass())) {
@@ -457,15 +497,111 @@ public class GraphQLSchemaWriter implements Visitor {
 
 
     public void printToBuffer(BufferedWriter writer) throws IOException {
+        printTo(writer);
+        writer.flush();
+    }
+
+    /**
+     * Writes the SDL text type by type to the given target, e.g. a {@link java.io.Writer} or a {@link StringBuilder}.
+     */
+    public void printTo(Appendable writer) throws IOException {
         for (Container c : this.finalList) {
             c.print(writer, typeMap, nameToText);
-            writer.newLine();
+            writer.append(NEW_LINE);
         }
-        writer.flush();
     }
 
 
 
+    /**
+     * Builds the graphql-java schema straight from the containers, i.e. the same schema that results from
+     * parsing the output of {@link #printToBuffer(BufferedWriter)}, but without printing and re-parsing the SDL.
+     * As when printing, the text names of types and fields are recorded in {@link #getNameToText()}.
+     */
+    public GraphQLSchema buildSchema() {
+        Map<String, GraphQLNamedType> types = new LinkedHashMap<>();
+        for (Container c : this.finalList) {
+            GraphQLNamedType type = buildType(c);
+            if (type != null) {
+                types.put(type.getName(), type);
+            }
+        }
+        // like the SDL without a schema definition: the root operation types are found by name
+        GraphQLSchema.Builder builder = GraphQLSchema.newSchema();
+        GraphQLNamedType query = types.get("Query");
+        if (query instanceof GraphQLObjectType) {
+            builder.query((GraphQLObjectType) query);
+            types.remove("Query");
+        }
+        GraphQLNamedType mutation = types.get("Mutation");
+        if (mutation instanceof GraphQLObjectType) {
+            builder.mutation((GraphQLObjectType) mutation);
+            types.remove("Mutation");
+        }
+        return builder.additionalTypes(new LinkedHashSet<>(types.values()))
+                .additionalDirective(Directives.DeprecatedDirective)
+                .additionalDirective(Directives.SpecifiedByDirective)
+                .build();
+    }
+
+    private GraphQLNamedType buildType(Container c) {
+        if (c.type == ContainerType.HIDDEN) {
+            return null;
+        }
+        nameToText.put(c.node, c.displayName);
+        switch (c.type) {
+            case SCALAR:
+                return StubWiring.stubScalar(c.displayName);
+            case OBJECT:
+                GraphQLObjectType.Builder object = GraphQLObjectType.newObject().name(c.displayName);
+                for (ContainerChild f : c.fields) {
+                    nameToText.put(f.edgeLabel, f.displayName);
+                    GraphQLFieldDefinition.Builder field = GraphQLFieldDefinition.newFieldDefinition()
+                            .name(f.displayName)
+                            .type((GraphQLOutputType) typeReference(f.targetName, f.setValued, f.mandatory));
+                    for (FieldArgument argument : f.arguments) {
+                        field.argument(GraphQLArgument.newArgument()
+                                .name(argument.getFieldName())
+                                .type((GraphQLInputType) typeReference(argument.getTypeName(), argument.isListValued(), argument.isMandatory())));
+                    }
+                    object.field(field);
+                }
+                return object.build();
+            case ENUM:
+                GraphQLEnumType.Builder enumeration = GraphQLEnumType.newEnum().name(c.displayName);
+                for (ContainerChild literal : c.fields) {
+                    enumeration.value(literal.displayName);
+                }
+                return enumeration.build();
+            case INPUT:
+                GraphQLInputObjectType.Builder input = GraphQLInputObjectType.newInputObject().name(c.displayName);
+                for (ContainerChild f : c.fields) {
+                    input.field(GraphQLInputObjectField.newInputObjectField()
+                            .name(f.displayName)
+                            .type((GraphQLInputType) typeReference(f.targetName, f.setValued, f.mandatory)));
+                }
+                return input.build();
+            default:
+                return null;
+        }
+    }
+
+    private GraphQLType typeReference(Name typeName, boolean setValued, boolean mandatory) {
+        GraphQLType result;
+        if (isBuiltinBasType(typeName)) {
+            result = BUILTIN_SCALAR_TYPES.get(getBuiltinBaseType(typeName));
+        } else {
+            result = GraphQLTypeReference.typeRef(typeMap.get(typeName).displayName);
+        }
+        if (setValued) {
+            result = GraphQLList.list(result);
+        }
+        if (mandatory) {
+            result = GraphQLNonNull.nonNull(result);
+        }
+        return result;
+    }
+
     @Override
     public void endMorphism() {
 
@@ -0,0 +1,191 @@
+package io.corrlang.gqlintegration.schema;
+
+import no.hvl.past.graph.elements.Triple;
+import no.hvl.past.names.Name;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Compiled, immutable metadata of an endpoint schema.
+ * Types and fields get dense int ids, everything that is asked per field of every request
+ * (display names, scalar-ness, list-ness, mandatory-ness) is kept in arrays and bit sets indexed by these ids.
+ * Names that are not part of the schema have the id -1.
+ * Ids are looked up by the identity of the name first, callers usually pass the very name instances of the schema,
+ * such that neither {@link Name#hashCode()} nor {@link Name#equals(Object)} is computed; equal names that are
+ * different instances are found via a map.
+ */
+public final class SchemaTable {
+
+    private final NameIndex typeIds;
+    private final String[] typeDisplayNames;
+    private final BitSet simpleTypes;
+
+    private final NameIndex fieldIds;
+    private final String[] fieldDisplayNames;
+    private final BitSet hasMultiplicity;
+    private final BitSet listValued;
+    private final BitSet mandatory;
+
+    private SchemaTable(
+            NameIndex typeIds,
+            String[] typeDisplayNames,
+            BitSet simpleTypes,
+            NameIndex fieldIds,
+            String[] fieldDisplayNames,
+            BitSet hasMultiplicity,
+            BitSet listValued,
+            BitSet mandatory) {
+        this.typeIds = typeIds;
+        this.typeDisplayNames = typeDisplayNames;
+        this.simpleTypes = simpleTypes;
+        this.fieldIds = fieldIds;
+        this.fieldDisplayNames = fieldDisplayNames;
+        this.hasMultiplicity = hasMultiplicity;
+        this.listValued = listValued;
+        this.mandatory = mandatory;
+    }
+
+    public int typeId(Name type) {
+        return typeIds.get(type);
+    }
+
+    public int fieldId(Name field) {
+        return fieldIds.get(field);
+    }
+
+    public String typeDisplayName(int typeId) {
+        return typeDisplayNames[typeId];
+    }
+
+    public String fieldDisplayName(int fieldId) {
+        return fieldDisplayNames[fieldId];
+    }
+
+    public boolean isSimpleType(int typeId) {
+        return simpleTypes.get(typeId);
+    }
+
+    /**
+     * Whether list-ness and mandatory-ness are known for the given field.
+     */
+    public boolean hasMultiplicity(int fieldId) {
+        return hasMultiplicity.get(fieldId);
+    }
+
+    public boolean isListValued(int fieldId) {
+        return listValued.get(fieldId);
+    }
+
+    public boolean isMandatory(int fieldId) {
+        return mandatory.get(fieldId);
+    }
+
+    /**
+     * Compiles the table for the given schema elements, the multiplicities given last win.
+     */
+    public static SchemaTable compile(
+            Collection<Triple> elements,
+            Collection<FieldMult> multiplicities,
+            Function<Name, String> displayName,
+            Predicate<Name> isSimpleType) {
+        Map<Name, Integer> typeIds = new HashMap<>();
+        Map<Name, Integer> fieldIds = new HashMap<>();
+        List<Name> typeInstances = new ArrayList<>();
+        List<Name> fieldInstances = new ArrayList<>();
+        for (Triple element : elements) {
+            if (element.isNode()) {
+                typeIds.putIfAbsent(element.getLabel(), typeIds.size());
+                typeInstances.add(element.getLabel());
+            } else {
+                fieldIds.putIfAbsent(element.getLabel(), fieldIds.size());
+                fieldInstances.add(element.getLabel());
+            }
+        }
+        for (FieldMult mult : multiplicities) {
+            fieldIds.putIfAbsent(mult.getElementName(), fieldIds.size());
+            fieldInstances.add(mult.getElementName());
+        }
+
+        String[] typeDisplayNames = new String[typeIds.size()];
+        BitSet simpleTypes = new BitSet(typeIds.size());
+        for (Map.Entry<Name, Integer> type : typeIds.entrySet()) {
+            typeDisplayNames[type.getValue()] = displayName.apply(type.getKey());
+            simpleTypes.set(type.getValue(), isSimpleType.test(type.getKey()));
+        }
+
+        String[] fieldDisplayNames = new String[fieldIds.size()];
+        for (Map.Entry<Name, Integer> field : fieldIds.entrySet()) {
+            fieldDisplayNames[field.getValue()] = displayName.apply(field.getKey());
+        }
+        BitSet hasMultiplicity = new BitSet(fieldIds.size());
+        BitSet listValued = new BitSet(fieldIds.size());
+        BitSet mandatory = new BitSet(fieldIds.size());
+        for (FieldMult mult : multiplicities) {
+            int id = fieldIds.get(mult.getElementName());
+            hasMultiplicity.set(id);
+            listValued.set(id, mult.isListValued());
+            mandatory.set(id, mult.isMandatory());
+        }
+        return new SchemaTable(
+                new NameIndex(typeIds, typeInstances),
+                typeDisplayNames,
+                simpleTypes,
+                new NameIndex(fieldIds, fieldInstances),
+                fieldDisplayNames,
+                hasMultiplicity,
+                listValued,
+                mandatory);
+    }
+
+    /**
+     * Name to id, open addressing by identity in front of a map by equality.
+     */
+    private static final class NameIndex {
+
+        private final Name[] instances;
+        private final int[] ids;
+        private final Map<Name, Integer> byEquality;
+
+        private NameIndex(Map<Name, Integer> byEquality, List<Name> instances) {
+            this.byEquality = byEquality;
+            // at most half full
+            int capacity = Integer.highestOneBit(Math.max(instances.size() * 2 - 1, 7)) << 1;
+            this.instances = new Name[capacity];
+            this.ids = new int[capacity];
+            int mask = capacity - 1;
+            for (Name instance : instances) {
+                int slot = slot(instance, mask);
+                while (this.instances[slot] != null && this.instances[slot] != instance) {
+                    slot = (slot + 1) & mask;
+                }
+                this.instances[slot] = instance;
+                this.ids[slot] = byEquality.get(instance);
+            }
+        }
+
+        int get(Name name) {
+            int mask = instances.length - 1;
+            int slot = slot(name, mask);
+            while (instances[slot] != null) {
+                if (instances[slot] == name) {
+                    return ids[slot];
+                }
+                slot = (slot + 1) & mask;
+            }
+            Integer id = byEquality.get(name);
+            return id == null ? -1 : id;
+        }
+
+        private static int slot(Name name, int mask) {
+            int hash = System.identityHashCode(name) * 0x9E3779B9;
+            return (hash ^ (hash >>> 16)) & mask;
+        }
+    }
+}
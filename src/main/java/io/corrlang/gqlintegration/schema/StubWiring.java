@@ -19,27 +19,34 @@ public class StubWiring {
 
         for (ScalarTypeDefinition scalarType : typeDefinitionRegistry.scalars().values()) {
             if (!BUILTIN_SCALARS.contains(scalarType.getName())) {
-                builder.scalar(GraphQLScalarType.newScalar().name(scalarType.getName()).coercing(new Coercing() {
-                    @Override
-                    public Object serialize(Object dataFetcherResult) throws CoercingSerializeException {
-                        return null;
-                    }
-
-                    @Override
-                    public Object parseValue(Object input) throws CoercingParseValueException {
-                        return null;
-                    }
-
-                    @Override
-                    public Object parseLiteral(Object input) throws CoercingParseLiteralException {
-                        return null;
-                    }
-                }).build());
+                builder.scalar(stubScalar(scalarType.getName()));
             }
         }
 
         return builder.build();
     }
 
+    /**
+     * A custom scalar that is only there for introspection, values are never coerced.
+     */
+    public static GraphQLScalarType stubScalar(String name) {
+        return GraphQLScalarType.newScalar().name(name).coercing(new Coercing() {
+            @Override
+            public Object serialize(Object dataFetcherResult) throws CoercingSerializeException {
+                return null;
+            }
+
+            @Override
+            public Object parseValue(Object input) throws CoercingParseValueException {
+                return null;
+            }
+
+            @Override
+            public Object parseLiteral(Object input) throws CoercingParseLiteralException {
+                return null;
+            }
+        }).build();
+    }
+
 
 }
@@ -0,0 +1,79 @@
+package io.corrlang.gqlintegration;
+
+import io.corrlang.gqlintegration.schema.GraphQLSchemaReader;
+import no.hvl.past.graph.elements.Triple;
+import no.hvl.past.names.Name;
+import org.junit.Test;
+
+import java.util.Optional;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Compares the indexed {@link GraphQLEndpoint#lookupField(Name, String)} with scanning the outgoing edges of the owner,
+ * which is what the lookup did before. Not part of the test suite, run it explicitly.
+ */
+public class FieldLookupBenchmark extends GraphQLTest {
+
+    private static final int TYPES = 20;
+    private static final int FIELDS = 300;
+    private static final int ROUNDS = 50;
+
+    @Test
+    public void benchmarkWideTypes() throws Exception {
+        StringBuilder schema = new StringBuilder("type Query {\n");
+        for (int t = 0; t < TYPES; t++) {
+            schema.append("   t").append(t).append(" : [T").append(t).append("]\n");
+        }
+        schema.append("}\n");
+        for (int t = 0; t < TYPES; t++) {
+            schema.append("type T").append(t).append(" {\n");
+            for (int f = 0; f < FIELDS; f++) {
+                schema.append("   f").append(f).append(" : String\n");
+            }
+            schema.append("}\n");
+        }
+        GraphQLEndpoint endpoint = new GraphQLSchemaReader(getUniverseForTest())
+                .convert("http://wide", Name.identifier("Wide"), parseSchemaAsText(schema.toString()), objectMapper, jsonFactory);
+
+        // warm-up and correctness
+        for (int t = 0; t < TYPES; t++) {
+            Name owner = Name.identifier("T" + t);
+            for (int f = 0; f < FIELDS; f++) {
+                assertEquals(scan(endpoint, owner, "f" + f), endpoint.lookupField(owner, "f" + f));
+            }
+            assertEquals(Optional.empty(), endpoint.lookupField(owner, "unknown"));
+        }
+
+        long scanStart = System.nanoTime();
+        int found = 0;
+        for (int r = 0; r < ROUNDS; r++) {
+            for (int t = 0; t < TYPES; t++) {
+                Name owner = Name.identifier("T" + t);
+                for (int f = 0; f < FIELDS; f++) {
+                    found += scan(endpoint, owner, "f" + f).isPresent() ? 1 : 0;
+                }
+            }
+        }
+        long scanTime = System.nanoTime() - scanStart;
+
+        long indexStart = System.nanoTime();
+        for (int r = 0; r < ROUNDS; r++) {
+            for (int t = 0; t < TYPES; t++) {
+                Name owner = Name.identifier("T" + t);
+                for (int f = 0; f < FIELDS; f++) {
+                    found -= endpoint.lookupField(owner, "f" + f).isPresent() ? 1 : 0;
+                }
+            }
+        }
+        long indexTime = System.nanoTime() - indexStart;
+
+        assertEquals(0, found);
+        logInfo("Field lookup (" + ROUNDS * TYPES * FIELDS + " lookups, " + FIELDS + " fields per type): scan "
+                + scanTime / 1_000_000 + " ms, index " + indexTime / 1_000_000 + " ms");
+    }
+
+    private static Optional<Triple> scan(GraphQLEndpoint endpoint, Name owner, String fieldName) {
+        return endpoint.schema().carrier().outgoing(owner).filter(t -> endpoint.displayName(t.getLabel()).equals(fieldName)).findFirst();
+    }
+}
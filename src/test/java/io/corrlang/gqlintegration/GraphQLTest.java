@@ -14,8 +14,12 @@ import no.hvl.past.graph.GraphBuilders;
 import no.hvl.past.graph.Universe;
 import no.hvl.past.graph.UniverseImpl;
 
+import org.junit.After;
+
 import javax.swing.*;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
 
 import static org.junit.Assume.assumeTrue;
@@ -28,6 +32,8 @@ public abstract class GraphQLTest extends TestBase {
 
     protected ObjectMapper objectMapper = new ObjectMapper(jsonFactory);
 
+    private final List<GraphQLAdapter> adapters = new ArrayList<>();
+
     protected DependencyInjectionContainer getDICOntainer() throws Exception {
         if (container == null) {
             Properties p = new Properties();
@@ -38,7 +44,15 @@ public abstract class GraphQLTest extends TestBase {
     }
 
     public GraphQLAdapter createAdapter() throws Exception {
-        return new GraphQLAdapter(getDICOntainer().getUniverse(), getDICOntainer().getPropertyHolder());
+        GraphQLAdapter adapter = new GraphQLAdapter(getDICOntainer().getUniverse(), getDICOntainer().getPropertyHolder());
+        adapters.add(adapter);
+        return adapter;
+    }
+
+    @After
+    public void closeAdapters() {
+        adapters.forEach(GraphQLAdapter::close);
+        adapters.clear();
     }
 
     Universe getUniverseForTest() {
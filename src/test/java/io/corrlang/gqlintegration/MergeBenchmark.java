@@ -0,0 +1,128 @@
+package io.corrlang.gqlintegration;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.corrlang.gqlintegration.queries.GraphQLQuery;
+import io.corrlang.gqlintegration.queries.MergeContext;
+import io.corrlang.gqlintegration.queries.QueryCursor;
+import no.hvl.past.graph.trees.TreeCreator;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Merges nested result lists of growing size, the time per element should stay constant.
+ * Not part of the test suite, run it explicitly.
+ */
+public class MergeBenchmark extends GraphQLTest {
+
+    private static final int[] SIZES = {25_000, 50_000, 100_000};
+
+    @Test
+    public void benchmarkLocalCursor() throws IOException {
+        // warm-up
+        mergeLocal(SIZES[0]);
+        for (int size : SIZES) {
+            long start = System.nanoTime();
+            int bytes = mergeLocal(size);
+            long time = System.nanoTime() - start;
+            assertTrue(bytes > size);
+            logInfo("Local merge of " + size + " nested elements: " + time / 1_000_000 + " ms (" + time / size + " ns per element)");
+        }
+    }
+
+    @Test
+    public void benchmarkConcatCursor() throws IOException {
+        // warm-up
+        mergeConcat(SIZES[0]);
+        for (int size : SIZES) {
+            long start = System.nanoTime();
+            int bytes = mergeConcat(size);
+            long time = System.nanoTime() - start;
+            assertTrue(bytes > size);
+            logInfo("Concatenation of " + size + " elements: " + time / 1_000_000 + " ms (" + time / size + " ns per element)");
+        }
+    }
+
+    private int mergeLocal(int size) throws IOException {
+        QueryCursor.LocalCursor store = new QueryCursor.LocalCursor(sel("store", false, true));
+        QueryCursor.LocalCursor items = new QueryCursor.LocalCursor(sel("items", true, true), store);
+        new QueryCursor.LocalCursor(sel("id", false, false), items);
+        new QueryCursor.LocalCursor(sel("name", false, false), items);
+
+        ObjectNode data = JsonNodeFactory.instance.objectNode();
+        data.putObject("store").set("items", items(size, "name"));
+
+        MergeContext context = new MergeContext();
+        store.addResult(context, data);
+        return write(store, context);
+    }
+
+    private int mergeConcat(int size) throws IOException {
+        QueryCursor.LocalCursor as = new QueryCursor.LocalCursor(sel("as", true, true));
+        QueryCursor.LocalCursor aId = new QueryCursor.LocalCursor(sel("id", false, false), as);
+        QueryCursor.LocalCursor aName = new QueryCursor.LocalCursor(sel("x", false, false), as);
+        QueryCursor.LocalCursor bs = new QueryCursor.LocalCursor(sel("bs", true, true));
+        QueryCursor.LocalCursor bId = new QueryCursor.LocalCursor(sel("id", false, false), bs);
+        QueryCursor.LocalCursor bName = new QueryCursor.LocalCursor(sel("y", false, false), bs);
+
+        String left = "http://a";
+        String right = "http://b";
+        QueryCursor.ConcatCursor root = new QueryCursor.ConcatCursor(sel("abs", true, true), QueryTest.twoEntryMap(left, as, right, bs));
+        new QueryCursor.ConcatCursor(sel("id", false, false), root, QueryTest.twoEntryMap(left, aId, right, bId));
+        new QueryCursor.ConcatCursor(sel("x", false, false), root, QueryTest.oneEntryMap(left, aName));
+        new QueryCursor.ConcatCursor(sel("y", false, false), root, QueryTest.oneEntryMap(right, bName));
+
+        ObjectNode leftData = JsonNodeFactory.instance.objectNode();
+        leftData.set("as", items(size / 2, "x"));
+        ObjectNode rightData = JsonNodeFactory.instance.objectNode();
+        rightData.set("bs", items(size - size / 2, "y"));
+
+        MergeContext context = new MergeContext();
+        root.addResults(context, QueryTest.<JsonNode>twoEntryMap(left, leftData, right, rightData));
+        return write(root, context);
+    }
+
+    private int write(QueryCursor root, MergeContext context) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        JsonGenerator generator = jsonFactory.createGenerator(bos);
+        generator.writeStartObject();
+        root.processOne(context, new TreeCreator.JsonGeneratorTreeCreator(generator));
+        generator.writeEndObject();
+        generator.close();
+        return bos.size();
+    }
+
+    private static ArrayNode items(int size, String field) {
+        ArrayNode array = JsonNodeFactory.instance.arrayNode(size);
+        for (int i = 0; i < size; i++) {
+            array.addObject().put("id", String.valueOf(i)).put(field, "item " + i);
+        }
+        return array;
+    }
+
+    private static GraphQLQuery.AbstractSelection sel(String field, boolean listValued, boolean complex) {
+        return new GraphQLQuery.AbstractSelection() {
+            @Override
+            public String field() {
+                return field;
+            }
+
+            @Override
+            public boolean isListValued() {
+                return listValued;
+            }
+
+            @Override
+            public boolean isComplex() {
+                return complex;
+            }
+        };
+    }
+}
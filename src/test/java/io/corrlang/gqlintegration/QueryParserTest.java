@@ -1,5 +1,8 @@
 package io.corrlang.gqlintegration;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.google.common.cache.CacheStats;
+import com.google.common.hash.Hashing;
 import io.corrlang.domain.MessageType;
 import io.corrlang.domain.ProcessingException;
 import io.corrlang.domain.Sys;
@@ -19,8 +22,10 @@ import no.hvl.past.util.IOStreamUtils;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -613,4 +618,98 @@ public class QueryParserTest extends GraphQLTest {
 
 
 
+    @Test
+    public void testParseCache() throws Exception {
+        String request = "{\n" +
+                "\t\"query\" : \"query { patients(id: \\\"12345\\\") { email } }\"\n" +
+                "}";
+        String faultyRequest = "{\n" +
+                "\t\"query\" : \"query myFalseQ1 { diagnosticReports { type createdAt } }\"\n" +
+                "}\n";
+
+        GraphMorphism first = endpoint.parseQueryOrInstance(IOStreamUtils.stringAsInputStream(request));
+        GraphMorphism second = endpoint.parseQueryOrInstance(IOStreamUtils.stringAsInputStream(request));
+        assertSame(first, second);
+
+        ProcessingException firstError = null;
+        for (int i = 0; i < 2; i++) {
+            try (InputStream inputStream = IOStreamUtils.stringAsInputStream(faultyRequest)) {
+                endpoint.parseQueryOrInstance(inputStream);
+                fail();
+            } catch (ProcessingException e) {
+                if (firstError == null) {
+                    firstError = e;
+                } else {
+                    assertEquals(firstError, e);
+                    assertNotSame(firstError, e);
+                }
+            }
+        }
+
+        CacheStats stats = endpoint.getOrCreateQueryHandler(endpoint.getObjectMapper(), endpoint.getJsonFactory()).getParseCacheStats();
+        assertEquals(2, stats.hitCount());
+        assertEquals(2, stats.missCount());
+    }
+
+    @Test
+    public void testQueryShape() throws Exception {
+        String first = "{\n" +
+                "\t\"query\" : \"query { patients(id: \\\"12345\\\") { email } }\"\n" +
+                "}";
+        String second = "{\n" +
+                "\t\"query\" : \"query { patients(id: \\\"67890\\\") { email } }\"\n" +
+                "}";
+
+        GraphQLQuery firstQuery = (GraphQLQuery) endpoint.parseQueryOrInstance(IOStreamUtils.stringAsInputStream(first));
+        GraphQLQuery secondQuery = (GraphQLQuery) endpoint.parseQueryOrInstance(IOStreamUtils.stringAsInputStream(second));
+        assertEquals(firstQuery.shape(), secondQuery.shape());
+        assertFalse(firstQuery.textualRepresentation().equals(secondQuery.textualRepresentation()));
+        assertFalse(firstQuery.shape().contains("12345"));
+    }
+
+    @Test
+    public void testPersistedQueries() throws Exception {
+        String query = "query { patients(id: \\\"12345\\\") { email } }";
+        String hash = Hashing.sha256().hashString("query { patients(id: \"12345\") { email } }", StandardCharsets.UTF_8).toString();
+        String hashOnly = "{ \"extensions\" : { \"persistedQuery\" : { \"version\" : 1, \"sha256Hash\" : \"" + hash + "\" } } }";
+        String register = "{ \"query\" : \"" + query + "\", \"extensions\" : { \"persistedQuery\" : { \"version\" : 1, \"sha256Hash\" : \"" + hash + "\" } } }";
+        String nullQuery = "{ \"query\" : null, \"extensions\" : { \"persistedQuery\" : { \"version\" : 1, \"sha256Hash\" : \"" + hash + "\" } } }";
+        String mismatch = "{ \"query\" : \"" + query + "\", \"extensions\" : { \"persistedQuery\" : { \"version\" : 1, \"sha256Hash\" : \"abc\" } } }";
+
+        GraphQueryErrorMessage notFound = new GraphQueryErrorMessage();
+        notFound.addError(ParsingErrorMessages.persistedQueryNotFound(), ParsingErrorMessages.persistedQueryNotFoundCode());
+        try (InputStream inputStream = IOStreamUtils.stringAsInputStream(hashOnly)) {
+            endpoint.parseQueryOrInstance(inputStream);
+            fail();
+        } catch (ProcessingException e) {
+            assertEquals(notFound, e);
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            JsonGenerator generator = endpoint.getJsonFactory().createGenerator(bos);
+            ((GraphQueryErrorMessage) e).write(generator);
+            generator.close();
+            assertEquals("PERSISTED_QUERY_NOT_FOUND", endpoint.getObjectMapper().readTree(bos.toByteArray()).get(0).path("extensions").path("code").asText());
+        }
+        // clients may send the query as explicit null
+        try (InputStream inputStream = IOStreamUtils.stringAsInputStream(nullQuery)) {
+            endpoint.parseQueryOrInstance(inputStream);
+            fail();
+        } catch (ProcessingException e) {
+            assertEquals(notFound, e);
+        }
+
+        GraphMorphism registered = endpoint.parseQueryOrInstance(IOStreamUtils.stringAsInputStream(register));
+        assertTrue(registered instanceof GraphQLQuery);
+        assertSame(registered, endpoint.parseQueryOrInstance(IOStreamUtils.stringAsInputStream(hashOnly)));
+        assertSame(registered, endpoint.parseQueryOrInstance(IOStreamUtils.stringAsInputStream(nullQuery)));
+
+        GraphQueryErrorMessage wrongHash = new GraphQueryErrorMessage();
+        wrongHash.addError(ParsingErrorMessages.persistedQueryHashMismatch("abc"));
+        try (InputStream inputStream = IOStreamUtils.stringAsInputStream(mismatch)) {
+            endpoint.parseQueryOrInstance(inputStream);
+            fail();
+        } catch (ProcessingException e) {
+            assertEquals(wrongHash, e);
+        }
+    }
+
 }
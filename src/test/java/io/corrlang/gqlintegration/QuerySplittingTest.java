@@ -6,6 +6,7 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import io.corrlang.domain.ComprSys;
 import io.corrlang.domain.QueryHandler;
 import io.corrlang.domain.Sys;
+import io.corrlang.gqlintegration.caller.IntrospectionQuery;
 import io.corrlang.gqlintegration.queries.GraphQLQuery;
 import io.corrlang.gqlintegration.queries.GraphQLQueryDivider;
 import io.corrlang.gqlintegration.queries.GraphQLQueryHandler;
@@ -17,11 +18,18 @@ import no.hvl.past.names.Name;
 
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPInputStream;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
@@ -73,6 +81,20 @@ public class QuerySplittingTest extends GraphQLTest{
 
     @Test
     public void testAllTogether() throws Exception {
+        checkAllTogether(null);
+    }
+
+    @Test
+    public void testAllTogetherConcurrently() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            checkAllTogether(executor);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private void checkAllTogether(Executor executor) throws Exception {
         JsonFactory jsonFactory = new JsonFactory();
         ObjectMapper om = new ObjectMapper(jsonFactory);
 
@@ -317,7 +339,7 @@ public class QuerySplittingTest extends GraphQLTest{
         localHandlers.put(ep3, ep3Handler);
 
 
-        GraphQLQueryHandler queryDivider = GraphQLQueryDivider.create(om, jsonFactory, cs, localHandlers);
+        GraphQLQueryDivider queryDivider = GraphQLQueryDivider.create(om, jsonFactory, cs, localHandlers, executor);
 
         GraphQLQuery.QueryRoot root = new GraphQLQuery.QueryRoot("r", false, Triple.edge(Name.identifier("Query.r"), Name.identifier("result").prefixWith(Name.identifier("Query.r")), Name.identifier("R")));
         GraphQLQuery.Node a = new GraphQLQuery.Node("a", Name.identifier("A"));
@@ -385,6 +407,26 @@ public class QuerySplittingTest extends GraphQLTest{
 
         assertEquals(om.readTree(expected).toPrettyString(), om.readTree(actual.toByteArray()).toPrettyString());
 
+        // the second request with the same text reuses the plan of the first one
+        ByteArrayOutputStream again = new ByteArrayOutputStream();
+        queryDivider.resolve(query, again);
+        assertEquals(om.readTree(expected).toPrettyString(), om.readTree(again.toByteArray()).toPrettyString());
+        assertEquals(1, queryDivider.getPlanCacheStats().hitCount());
+        // both endpoints contribute, hence there is nothing to forward
+        assertEquals(2, queryDivider.getQueryCount());
+        assertEquals(0, queryDivider.getFastPathCount());
+
+        // introspection responses are computed once and then copied
+        String introspection = "{\"query\" : \"{ __schema { queryType { name } } }\"}";
+        ByteArrayOutputStream first = new ByteArrayOutputStream();
+        queryDivider.handle(new ByteArrayInputStream(introspection.getBytes(StandardCharsets.UTF_8)), first);
+        ByteArrayOutputStream second = new ByteArrayOutputStream();
+        queryDivider.handle(new ByteArrayInputStream(introspection.getBytes(StandardCharsets.UTF_8)), second);
+        assertEquals("Query", om.readTree(first.toByteArray()).get("data").get("__schema").get("queryType").get("name").asText());
+        assertArrayEquals(first.toByteArray(), second.toByteArray());
+        byte[] gzipped = queryDivider.introspectionResponse(new IntrospectionQuery("{ __schema { queryType { name } } }", null), true);
+        assertArrayEquals(first.toByteArray(), new GZIPInputStream(new ByteArrayInputStream(gzipped)).readAllBytes());
+
     }
 
 
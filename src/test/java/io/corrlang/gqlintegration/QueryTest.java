@@ -2,12 +2,16 @@ package io.corrlang.gqlintegration;
 
 import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.Multimap;
 import io.corrlang.gqlintegration.queries.GraphQLQuery;
+import io.corrlang.gqlintegration.queries.MergeContext;
+import io.corrlang.gqlintegration.queries.Passthrough;
 import io.corrlang.gqlintegration.queries.QueryCursor;
 import no.hvl.past.graph.Sketch;
 import no.hvl.past.graph.elements.Triple;
@@ -25,8 +29,12 @@ import java.io.IOException;
 import java.util.Arrays;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.function.Function;
 
 import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertFalse;
+import static junit.framework.TestCase.assertNull;
+import static junit.framework.TestCase.assertTrue;
 
 public class QueryTest  extends GraphQLTest {
 
@@ -268,13 +276,14 @@ public class QueryTest  extends GraphQLTest {
         QueryCursor.LocalCursor quantiyCursor = new QueryCursor.LocalCursor(sel("valueQuantity", false, true), obsCursor);
         new QueryCursor.LocalCursor(sel("value", false, false), quantiyCursor);
 
-        cursorRoot.addResult(root.get("data"));
+        MergeContext context = new MergeContext();
+        cursorRoot.addResult(context, root.get("data"));
 
         ByteArrayOutputStream bos = new ByteArrayOutputStream();
 
         JsonGenerator generator = factory.createGenerator(bos);
         generator.writeStartObject();
-        cursorRoot.processOne(new TreeCreator.JsonGeneratorTreeCreator(generator));
+        cursorRoot.processOne(context, new TreeCreator.JsonGeneratorTreeCreator(generator));
         generator.writeEndObject();
         generator.flush();
         generator.close();
@@ -326,6 +335,122 @@ public class QueryTest  extends GraphQLTest {
         assertEquals(prettifyjson(objectMapper, expected), prettifyjson(objectMapper, actual));
     }
 
+    @Test
+    public void testLocalCursorStreamed() throws IOException {
+        QueryCursor.LocalCursor cursorRoot = new QueryCursor.LocalCursor(sel("patients", true, true));
+        new QueryCursor.LocalCursor(sel("id", false, false), cursorRoot);
+        QueryCursor.LocalCursor obsCursor = new QueryCursor.LocalCursor(sel("observations", true, true), cursorRoot);
+        QueryCursor.LocalCursor codingCursor = new QueryCursor.LocalCursor(sel("coding", false, true), obsCursor);
+        new QueryCursor.LocalCursor(sel("code", false, false), codingCursor);
+        QueryCursor.LocalCursor quantiyCursor = new QueryCursor.LocalCursor(sel("valueQuantity", false, true), obsCursor);
+        new QueryCursor.LocalCursor(sel("value", false, false), quantiyCursor);
+
+        String sparse = "{ \"data\" : { \"patients\" : [ { \"id\" : \"7\" }, null, { \"observations\" : [ { \"coding\" : null } ] } ] } }";
+        for (String json : Arrays.asList(PATIENT_OBSERVATION_JSON, sparse)) {
+            MergeContext treeContext = new MergeContext();
+            cursorRoot.addResult(treeContext, objectMapper.readTree(json).get("data"));
+
+            MergeContext streamedContext = new MergeContext();
+            JsonParser parser = jsonFactory.createParser(json);
+            parser.setCodec(objectMapper);
+            do {
+                parser.nextToken();
+            } while (parser.getCurrentToken() != JsonToken.START_ARRAY);
+            cursorRoot.addResult(streamedContext, parser);
+
+            assertEquals(write(cursorRoot, treeContext), write(cursorRoot, streamedContext));
+        }
+    }
+
+    @Test
+    public void testPassthrough() throws IOException {
+        QueryCursor.LocalCursor aCursorRoot = new QueryCursor.LocalCursor(sel("as", true, true));
+        QueryCursor.LocalCursor axCursor = new QueryCursor.LocalCursor(sel("x", false, false), aCursorRoot);
+        QueryCursor.LocalCursor ayCursor = new QueryCursor.LocalCursor(sel("y1", false, false), aCursorRoot);
+        QueryCursor.LocalCursor bCursorRoot = new QueryCursor.LocalCursor(sel("bs", true, true));
+
+        String key = "http://a";
+        QueryCursor.ConcatCursor abCursorRoot = new QueryCursor.ConcatCursor(sel("abs", true, true), oneEntryMap(key, aCursorRoot));
+        new QueryCursor.ConcatCursor(sel("x", false, false), abCursorRoot, oneEntryMap(key, axCursor));
+        new QueryCursor.ConcatCursor(sel("y", false, false), abCursorRoot, oneEntryMap(key, ayCursor));
+        new QueryCursor.ConcatCursor(sel("z", false, false), abCursorRoot, new LinkedHashMap<>());
+        new QueryCursor.ConcatCursor(sel("zs", true, false), abCursorRoot, new LinkedHashMap<>());
+
+        Passthrough passthrough = Passthrough.of(abCursorRoot);
+        assertEquals(key, passthrough.getUrl());
+        assertEquals("as", passthrough.getLocalField());
+        assertNull(Passthrough.of(new QueryCursor.ConcatCursor(sel("abs", true, true), twoEntryMap(key, aCursorRoot, "http://b", bCursorRoot))));
+        assertFalse(passthrough.isRenamingRootOnly());
+        QueryCursor.ConcatCursor renamedRoot = new QueryCursor.ConcatCursor(sel("cs", true, true), oneEntryMap(key, aCursorRoot));
+        new QueryCursor.ConcatCursor(sel("x", false, false), renamedRoot, oneEntryMap(key, axCursor));
+        new QueryCursor.ConcatCursor(sel("y1", false, false), renamedRoot, oneEntryMap(key, ayCursor));
+        assertTrue(Passthrough.of(renamedRoot).isRenamingRootOnly());
+        assertEquals("cs", Passthrough.of(renamedRoot).getField());
+
+        String json = "{ \"as\" : [ { \"x\" : \"1\", \"y1\" : \"a\", \"w\" : { \"v\" : 1 } }, { \"x\" : \"2\", \"y1\" : \"b\" } ] }";
+        MergeContext context = new MergeContext();
+        abCursorRoot.addResults(context, oneEntryMap(key, objectMapper.readTree(json)));
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        JsonGenerator generator = jsonFactory.createGenerator(bos);
+        JsonParser parser = jsonFactory.createParser(json);
+        do {
+            parser.nextToken();
+        } while (parser.getCurrentToken() != JsonToken.START_ARRAY);
+        generator.writeStartObject();
+        generator.writeFieldName("abs");
+        passthrough.write(parser, generator);
+        generator.writeEndObject();
+        generator.close();
+
+        assertEquals(prettifyjson(objectMapper, write(abCursorRoot, context)), prettifyjson(objectMapper, bos.toString("UTF-8")));
+    }
+
+    @Test
+    public void testPassthroughNullComplexValues() throws IOException {
+        QueryCursor.LocalCursor aCursorRoot = new QueryCursor.LocalCursor(sel("as", true, true));
+        QueryCursor.LocalCursor axCursor = new QueryCursor.LocalCursor(sel("x", false, false), aCursorRoot);
+        QueryCursor.LocalCursor awCursor = new QueryCursor.LocalCursor(sel("w", false, true), aCursorRoot);
+        QueryCursor.LocalCursor avCursor = new QueryCursor.LocalCursor(sel("v", false, false), awCursor);
+
+        String key = "http://a";
+        QueryCursor.ConcatCursor abCursorRoot = new QueryCursor.ConcatCursor(sel("abs", true, true), oneEntryMap(key, aCursorRoot));
+        new QueryCursor.ConcatCursor(sel("y", false, false), abCursorRoot, oneEntryMap(key, axCursor));
+        QueryCursor.ConcatCursor wCursor = new QueryCursor.ConcatCursor(sel("w", false, true), abCursorRoot, oneEntryMap(key, awCursor));
+        new QueryCursor.ConcatCursor(sel("v", false, false), wCursor, oneEntryMap(key, avCursor));
+        Passthrough passthrough = Passthrough.of(abCursorRoot);
+
+        String json = "{ \"as\" : [ { \"x\" : \"1\", \"w\" : null }, null, { \"x\" : \"2\", \"w\" : { \"v\" : 1 } } ] }";
+        MergeContext context = new MergeContext();
+        abCursorRoot.addResults(context, oneEntryMap(key, objectMapper.readTree(json)));
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        JsonGenerator generator = jsonFactory.createGenerator(bos);
+        JsonParser parser = jsonFactory.createParser(json);
+        do {
+            parser.nextToken();
+        } while (parser.getCurrentToken() != JsonToken.START_ARRAY);
+        generator.writeStartObject();
+        generator.writeFieldName("abs");
+        passthrough.write(parser, generator);
+        generator.writeEndObject();
+        generator.close();
+
+        String expected = "{ \"abs\" : [ { \"y\" : \"1\", \"w\" : null }, null, { \"y\" : \"2\", \"w\" : { \"v\" : 1 } } ] }";
+        assertEquals(prettifyjson(objectMapper, expected), prettifyjson(objectMapper, bos.toString("UTF-8")));
+        assertEquals(prettifyjson(objectMapper, expected), prettifyjson(objectMapper, write(abCursorRoot, context)));
+    }
+
+    private String write(QueryCursor cursor, MergeContext context) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        JsonGenerator generator = jsonFactory.createGenerator(bos);
+        generator.writeStartObject();
+        cursor.processOne(context, new TreeCreator.JsonGeneratorTreeCreator(generator));
+        generator.writeEndObject();
+        generator.close();
+        return bos.toString("UTF-8");
+    }
+
     public static <S> Map<String, S> oneEntryMap(String key, S value) {
         Map<String, S> result = new LinkedHashMap<>();
         result.put(key, value);
@@ -424,13 +549,14 @@ public class QueryTest  extends GraphQLTest {
         new QueryCursor.ConcatCursor(sel("y", false, false), abCursorRoot, twoEntryMap(leftKey,ayCursor,rightKey,byCursor));
         new QueryCursor.ConcatCursor(sel("z", false, false), abCursorRoot, oneEntryMap(rightKey,bzCursor));
 
-        abCursorRoot.addResults(twoEntryMap(leftKey, asRoot, rightKey, bsRoot));
+        MergeContext context = new MergeContext();
+        abCursorRoot.addResults(context, twoEntryMap(leftKey, asRoot, rightKey, bsRoot));
 
         ByteArrayOutputStream bos = new ByteArrayOutputStream();
 
         JsonGenerator generator = factory.createGenerator(bos);
         generator.writeStartObject();
-        abCursorRoot.processOne(new TreeCreator.JsonGeneratorTreeCreator(generator));
+        abCursorRoot.processOne(context, new TreeCreator.JsonGeneratorTreeCreator(generator));
         generator.writeEndObject();
         generator.flush();
         generator.close();
@@ -499,12 +625,13 @@ public class QueryTest  extends GraphQLTest {
         QueryCursor.ConcatCursor partnerWorksAt = new QueryCursor.ConcatCursor(sel("worksAt", true, true),partnersRoot,oneEntryMap(rightKey,employeeWAt));
         new QueryCursor.ConcatCursor(sel("name", false, false),partnerWorksAt, oneEntryMap(rightKey, departName));
 
-        partnersRoot.addResults(threeEntryMap(leftKey, customerResponse.get("data"), middleKey, clientResponse.get("data"), rightKey, employeeResponse.get("data")));
+        MergeContext context = new MergeContext();
+        partnersRoot.addResults(context, threeEntryMap(leftKey, customerResponse.get("data"), middleKey, clientResponse.get("data"), rightKey, employeeResponse.get("data")));
         ByteArrayOutputStream bos = new ByteArrayOutputStream();
 
         JsonGenerator generator = factory.createGenerator(bos);
         generator.writeStartObject();
-        partnersRoot.processOne(new TreeCreator.JsonGeneratorTreeCreator(generator));
+        partnersRoot.processOne(context, new TreeCreator.JsonGeneratorTreeCreator(generator));
         generator.writeEndObject();
         generator.flush();
         generator.close();
@@ -586,6 +713,115 @@ public class QueryTest  extends GraphQLTest {
         assertEquals(prettifyjson(objectMapper,exptected), prettifyjson(objectMapper, bos.toString("UTF-8")));
     }
 
+    private static Key attributeKey(String type, String field) {
+        return new AttributeBasedKey(null, Triple.edge(Name.identifier(type), Name.identifier(field), Name.identifier("String")), Name.identifier("Partner"));
+    }
+
+    @Test
+    public void testKeyJoinGroups() throws IOException {
+        String customersKey = "http://customers";
+        String clientsKey = "http://clients";
+        String contactsKey = "http://contacts";
+        QueryCursor.LocalCursor customersRoot = new QueryCursor.LocalCursor(sel("customers", true, true));
+        QueryCursor.LocalCursor customerId = new QueryCursor.LocalCursor(sel("id", false, false), customersRoot);
+        QueryCursor.LocalCursor clientsRoot = new QueryCursor.LocalCursor(sel("clients", true, true));
+        QueryCursor.LocalCursor clientId = new QueryCursor.LocalCursor(sel("id", false, false), clientsRoot);
+        QueryCursor.LocalCursor clientEmail = new QueryCursor.LocalCursor(sel("email", false, false), clientsRoot);
+        QueryCursor.LocalCursor contactsRoot = new QueryCursor.LocalCursor(sel("contacts", true, true));
+        QueryCursor.LocalCursor contactEmail = new QueryCursor.LocalCursor(sel("email", false, false), contactsRoot);
+
+        Multimap<String, Key> keyMap = ArrayListMultimap.create();
+        keyMap.put(customersKey, attributeKey("Customer", "id"));
+        keyMap.put(clientsKey, attributeKey("Client", "id"));
+        keyMap.put(clientsKey, attributeKey("Client", "email"));
+        keyMap.put(contactsKey, attributeKey("Contact", "email"));
+
+        QueryCursor.ConcatMergeCursor partnersRoot = new QueryCursor.ConcatMergeCursor(sel("partners", true, true),
+                threeEntryMap(customersKey, customersRoot, clientsKey, clientsRoot, contactsKey, contactsRoot), keyMap);
+        new QueryCursor.ConcatCursor(sel("id", true, false), partnersRoot, twoEntryMap(customersKey, customerId, clientsKey, clientId));
+        new QueryCursor.ConcatCursor(sel("email", true, false), partnersRoot, twoEntryMap(clientsKey, clientEmail, contactsKey, contactEmail));
+
+        // customer 1 only meets client 9 over client 1 and the shared email,
+        // customer 2 is there twice, the customers key has no email and contact b@x has no partner
+        JsonNode customers = objectMapper.readTree("{ \"customers\" : [ { \"id\" : \"1\" }, { \"id\" : \"2\" }, { \"id\" : \"2\" }, { \"id\" : \"3\" }, { \"email\" : \"a@x\" } ] }");
+        JsonNode clients = objectMapper.readTree("{ \"clients\" : [ { \"id\" : \"3\", \"email\" : \"c@x\" }, { \"id\" : \"9\", \"email\" : \"a@x\" }, { \"id\" : \"1\", \"email\" : \"a@x\" } ] }");
+        JsonNode contacts = objectMapper.readTree("{ \"contacts\" : [ { \"email\" : \"a@x\" }, { \"email\" : \"b@x\" } ] }");
+        MergeContext context = new MergeContext();
+        partnersRoot.addResults(context, threeEntryMap(customersKey, customers, clientsKey, clients, contactsKey, contacts));
+
+        String expected = "{ \"partners\" : [ " +
+                "{ \"id\" : [ \"1\", \"9\", \"1\" ], \"email\" : [ \"a@x\", \"a@x\", \"a@x\" ] }, " +
+                "{ \"id\" : [ \"2\", \"2\" ], \"email\" : [ ] }, " +
+                "{ \"id\" : [ \"3\", \"3\" ], \"email\" : [ \"c@x\" ] }, " +
+                "{ \"id\" : [ ], \"email\" : [ ] }, " +
+                "{ \"id\" : [ ], \"email\" : [ \"b@x\" ] } ] }";
+        assertEquals(prettifyjson(objectMapper, expected), prettifyjson(objectMapper, write(partnersRoot, context)));
+    }
+
+    @Test
+    public void testKeyJoinManyKeyValues() throws IOException {
+        String clientsKey = "http://clients";
+        QueryCursor.LocalCursor clientsRoot = new QueryCursor.LocalCursor(sel("clients", true, true));
+        QueryCursor.LocalCursor clientId = new QueryCursor.LocalCursor(sel("id", false, false), clientsRoot);
+
+        Multimap<String, Key> keyMap = ArrayListMultimap.create();
+        for (String field : Arrays.asList("id", "email", "phone", "name")) {
+            keyMap.put(clientsKey, attributeKey("Client", field));
+        }
+        QueryCursor.ConcatMergeCursor partnersRoot = new QueryCursor.ConcatMergeCursor(sel("partners", true, true),
+                oneEntryMap(clientsKey, clientsRoot), keyMap);
+        new QueryCursor.ConcatCursor(sel("id", true, false), partnersRoot, oneEntryMap(clientsKey, clientId));
+
+        // four key values per element outgrow the table sized for the element count,
+        // client i and client i + 10 share their phone number
+        StringBuilder clients = new StringBuilder("{ \"clients\" : [ ");
+        for (int i = 0; i < 20; i++) {
+            if (i > 0) {
+                clients.append(", ");
+            }
+            clients.append("{ \"id\" : \"c").append(i)
+                    .append("\", \"email\" : \"e").append(i)
+                    .append("\", \"phone\" : \"p").append(i % 10)
+                    .append("\", \"name\" : \"n").append(i).append("\" }");
+        }
+        clients.append(" ] }");
+        MergeContext context = new MergeContext();
+        partnersRoot.addResults(context, oneEntryMap(clientsKey, objectMapper.readTree(clients.toString())));
+
+        JsonNode partners = objectMapper.readTree(write(partnersRoot, context)).get("partners");
+        assertEquals(10, partners.size());
+        for (int i = 0; i < 10; i++) {
+            assertEquals(objectMapper.readTree("[ \"c" + i + "\", \"c" + (i + 10) + "\" ]"), partners.get(i).get("id"));
+        }
+    }
+
+    @Test
+    public void testKeyJoinDisplayNames() throws IOException {
+        String clientsKey = "http://clients";
+        QueryCursor.LocalCursor clientsRoot = new QueryCursor.LocalCursor(sel("clients", true, true));
+        QueryCursor.LocalCursor clientId = new QueryCursor.LocalCursor(sel("id", false, false), clientsRoot);
+
+        Multimap<String, Key> keyMap = ArrayListMultimap.create();
+        keyMap.put(clientsKey, attributeKey("Client", "id"));
+        keyMap.put(clientsKey, attributeKey("Client", "email"));
+        // the clients endpoint calls its email field "mail"
+        Map<String, Function<Name, String>> displayNames = new LinkedHashMap<>();
+        displayNames.put(clientsKey, label -> label.equals(Name.identifier("email")) ? "mail" : label.printRaw());
+        QueryCursor.ConcatMergeCursor partnersRoot = new QueryCursor.ConcatMergeCursor(sel("partners", true, true),
+                oneEntryMap(clientsKey, clientsRoot), keyMap, displayNames);
+        new QueryCursor.ConcatCursor(sel("id", true, false), partnersRoot, oneEntryMap(clientsKey, clientId));
+
+        // a field named like the label is not the email field, only the ids join
+        JsonNode clients = objectMapper.readTree("{ \"clients\" : [ { \"id\" : \"1\", \"email\" : \"a@x\" }, { \"id\" : \"2\", \"email\" : \"a@x\" }, { \"id\" : \"1\" } ] }");
+        MergeContext context = new MergeContext();
+        partnersRoot.addResults(context, oneEntryMap(clientsKey, clients));
+
+        String expected = "{ \"partners\" : [ " +
+                "{ \"id\" : [ \"1\", \"1\" ] }, " +
+                "{ \"id\" : [ \"2\" ] } ] }";
+        assertEquals(prettifyjson(objectMapper, expected), prettifyjson(objectMapper, write(partnersRoot, context)));
+    }
+
     @Test
     public void testFromSplittingTest() throws IOException {
         JsonFactory factory = new JsonFactory();
@@ -0,0 +1,60 @@
+package io.corrlang.gqlintegration;
+
+import graphql.schema.GraphQLSchema;
+import io.corrlang.gqlintegration.schema.GraphQLSchemaReader;
+import no.hvl.past.names.Name;
+import org.junit.Test;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Imports synthetic schemas of growing size to check that {@link GraphQLSchemaReader#convert} scales linearly
+ * in the number of fields. Not part of the test suite, run it explicitly.
+ */
+public class SchemaImportBenchmark extends GraphQLTest {
+
+    private static final int FIELDS_PER_TYPE = 100;
+
+    @Test
+    public void benchmarkImport() throws Exception {
+        // warm-up
+        importSchema(1_000);
+        for (int fields : new int[]{1_000, 10_000, 100_000}) {
+            GraphQLSchema schema = parseSchemaAsText(createSchema(fields));
+            long start = System.nanoTime();
+            GraphQLEndpoint endpoint = new GraphQLSchemaReader(getUniverseForTest())
+                    .convert("http://synthetic", Name.identifier("Synthetic"), schema, objectMapper, jsonFactory);
+            long time = System.nanoTime() - start;
+            assertTrue(endpoint.lookupField(Name.identifier("T0"), "f0").isPresent());
+            logInfo("Importing schema with " + fields + " fields: " + time / 1_000_000 + " ms");
+        }
+    }
+
+    private void importSchema(int fields) throws Exception {
+        new GraphQLSchemaReader(getUniverseForTest())
+                .convert("http://synthetic", Name.identifier("Synthetic"), parseSchemaAsText(createSchema(fields)), objectMapper, jsonFactory);
+    }
+
+    private static String createSchema(int fields) {
+        int types = Math.max(1, fields / FIELDS_PER_TYPE);
+        StringBuilder schema = new StringBuilder("type Query {\n");
+        for (int t = 0; t < types; t++) {
+            schema.append("   t").append(t).append("(id : ID!) : [T").append(t).append("]\n");
+        }
+        schema.append("}\n");
+        for (int t = 0; t < types; t++) {
+            schema.append("type T").append(t).append(" {\n");
+            for (int f = 0; f < FIELDS_PER_TYPE; f++) {
+                if (f % 10 == 0) {
+                    schema.append("   f").append(f).append(" : [String]\n");
+                } else if (f % 10 == 1) {
+                    schema.append("   f").append(f).append(" : String!\n");
+                } else {
+                    schema.append("   f").append(f).append(" : String\n");
+                }
+            }
+            schema.append("}\n");
+        }
+        return schema.toString();
+    }
+}
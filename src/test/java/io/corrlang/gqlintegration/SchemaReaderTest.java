@@ -1,7 +1,10 @@
 package io.corrlang.gqlintegration;
 
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.google.common.collect.Sets;
+import graphql.GraphQL;
 import graphql.Scalars;
+import graphql.introspection.IntrospectionQuery;
 import graphql.schema.GraphQLFieldDefinition;
 import graphql.schema.GraphQLObjectType;
 import graphql.schema.GraphQLSchema;
@@ -13,6 +16,8 @@ import io.corrlang.domain.MessageArgument;
 import io.corrlang.domain.MessageType;
 import io.corrlang.domain.Sys;
 import io.corrlang.gqlintegration.predicates.InputType;
+import io.corrlang.gqlintegration.caller.SchemaSnapshotStore;
+import io.corrlang.gqlintegration.schema.FieldMult;
 import io.corrlang.gqlintegration.schema.GraphQLSchemaReader;
 import no.hvl.past.graph.*;
 import no.hvl.past.graph.elements.Triple;
@@ -26,8 +31,20 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 
 import static junit.framework.TestCase.*;
@@ -174,6 +191,59 @@ public class SchemaReaderTest extends GraphQLTest {
 
     }
 
+    @Test
+    public void testMultiplicitiesMatchFieldMults() throws Exception {
+        for (GraphQLSchema schema : Arrays.asList(littleManuallyProgrammed, salesSchema)) {
+            GraphQLSchemaReader converter = new GraphQLSchemaReader(new UniverseImpl(UniverseImpl.EMPTY));
+            GraphQLEndpoint endpoint = converter.convert("http://localhost", Name.identifier("mults"), schema, objectMapper, jsonFactory);
+            // the lookup the schema table replaces
+            Map<Name, FieldMult> fieldMults = new HashMap<>();
+            for (FieldMult mult : converter.getMultiplicities()) {
+                fieldMults.put(mult.getElementName(), mult);
+            }
+            assertFalse(fieldMults.isEmpty());
+            for (Triple edge : endpoint.schema().carrier().edges().collect(Collectors.toList())) {
+                FieldMult mult = fieldMults.get(edge.getLabel());
+                if (mult == null) {
+                    continue;
+                }
+                assertMultiplicity(endpoint, edge, mult);
+            }
+        }
+        // equal names that are not the instances of the schema are found as well
+        GraphQLSchemaReader converter = new GraphQLSchemaReader(new UniverseImpl(UniverseImpl.EMPTY));
+        GraphQLEndpoint small = converter.convert("http://localhost", Name.identifier("test"), littleManuallyProgrammed, objectMapper, jsonFactory);
+        Name ageLabel = Name.identifier("age").prefixWith(Name.identifier("B"));
+        FieldMult ageMult = converter.getMultiplicities().stream().filter(m -> m.getElementName().equals(ageLabel)).findFirst().get();
+        assertMultiplicity(small, Triple.edge(Name.identifier("B"), ageLabel, Name.identifier("Int")), ageMult);
+    }
+
+    private static void assertMultiplicity(GraphQLEndpoint endpoint, Triple edge, FieldMult mult) {
+        assertEquals(mult.isListValued(), endpoint.isCollectionValued(edge));
+        assertEquals(mult.isMandatory() && !mult.isListValued(), endpoint.hasTargetMultiplicity(edge, 1, 1));
+        assertEquals(mult.isMandatory(), endpoint.hasTargetMultiplicity(edge, 1, -1));
+        assertEquals(!mult.isListValued(), endpoint.hasTargetMultiplicity(edge, 0, 1));
+        assertEquals(mult.isListValued(), endpoint.hasTargetMultiplicity(edge, 0, -1));
+    }
+
+    @Test
+    public void testConcurrentConversion() throws Exception {
+        GraphQLSchemaReader converter = new GraphQLSchemaReader(new UniverseImpl(UniverseImpl.EMPTY));
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Sys>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                Name name = Name.identifier("sales" + i);
+                results.add(executor.submit(() -> converter.convert("http://localhost", name, salesSchema, objectMapper, jsonFactory)));
+            }
+            for (Future<Sys> result : results) {
+                assertsAboutSalesSchema(result.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
     static void assertsAboutSalesSchema(Sys result) {
         Set<Name> nodes = result.schema().carrier().nodes().collect(Collectors.toSet());
         Set<Name> expectedNodes = Sets.newHashSet(
@@ -324,5 +394,69 @@ public class SchemaReaderTest extends GraphQLTest {
         assertTrue(result.diagramsOn(Triple.node(Name.identifier("CustomerData"))).anyMatch(d -> d.label() instanceof InputType));
     }
 
+    @Test
+    public void testImportFromSnapshot() throws Exception {
+        String content = "type Query {\n" +
+                "\tcustomers: [Customer]\n" +
+                "}\n" +
+                "\n" +
+                "type Customer {\n" +
+                "\tid: ID!\n" +
+                "\tname: String\n" +
+                "}\n";
+        GraphQLSchema live = parseSchemaAsText(content);
+        Map<String, Object> introspectionResult = objectMapper.convertValue(
+                GraphQL.newGraphQL(live).build().execute(IntrospectionQuery.INTROSPECTION_QUERY).getData(),
+                new TypeReference<Map<String, Object>>() {
+                });
+
+        File directory = Files.createTempDirectory("snapshots").toFile();
+        SchemaSnapshotStore store = new SchemaSnapshotStore(directory, objectMapper);
+        assertFalse(store.load("http://localhost/graphql", "Customers").isPresent());
+        store.store("http://localhost/graphql", "Customers", introspectionResult);
+        assertEquals(introspectionResult, store.load("http://localhost/graphql", "Customers").get());
+        assertFalse(store.load("http://localhost/other", "Customers").isPresent());
+
+        GraphQLEndpoint endpoint = GraphQLEndpoint.createFromIntrospection(
+                "http://localhost/graphql",
+                Name.identifier("Customers"),
+                new GraphQLSchemaReader(getUniverseForTest()),
+                store.load("http://localhost/graphql", "Customers").get(),
+                objectMapper,
+                jsonFactory,
+                null);
+        assertTrue(endpoint.lookupField(Name.identifier("Customer"), "name").isPresent());
+        assertTrue(endpoint.getQueryMessage("customers").isPresent());
+    }
+
+    @Test
+    public void testStreamedIntrospectionResult() throws Exception {
+        GraphQLSchema live = parseSchemaAsText("type Query {\n" +
+                "\tcustomers: [Customer]\n" +
+                "}\n" +
+                "type Customer {\n" +
+                "\tid: ID!\n" +
+                "\tname: String\n" +
+                "}\n");
+        Object data = GraphQL.newGraphQL(live).build().execute(IntrospectionQuery.INTROSPECTION_QUERY).getData();
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("extensions", Collections.singletonMap("tracing", Collections.singletonList(1)));
+        response.put("data", data);
+        byte[] bytes = objectMapper.writeValueAsBytes(response);
+
+        Map<String, Object> result = io.corrlang.gqlintegration.caller.IntrospectionQuery.readIntrospectionResult(new ByteArrayInputStream(bytes));
+        assertEquals(objectMapper.convertValue(data, Map.class), result);
+
+        GraphQLEndpoint endpoint = new GraphQLSchemaReader(getUniverseForTest()).convert(
+                "http://localhost/graphql",
+                Name.identifier("Customers"),
+                io.corrlang.gqlintegration.caller.IntrospectionQuery.toGraphQLSchema(result),
+                objectMapper,
+                jsonFactory);
+        assertTrue(endpoint.lookupField(Name.identifier("Customer"), "name").isPresent());
+        assertNull(io.corrlang.gqlintegration.caller.IntrospectionQuery.readIntrospectionResult(
+                new ByteArrayInputStream("{\"errors\":[{\"message\":\"x\"}],\"data\":null}".getBytes(StandardCharsets.UTF_8))));
+    }
+
 
 }
@@ -4,7 +4,13 @@ import io.corrlang.domain.MessageArgument;
 import io.corrlang.domain.Sys;
 import io.corrlang.gqlintegration.predicates.FieldArgument;
 import io.corrlang.gqlintegration.predicates.InputType;
+import graphql.schema.GraphQLSchema;
+import graphql.schema.idl.SchemaGenerator;
+import graphql.schema.idl.SchemaParser;
+import graphql.schema.idl.SchemaPrinter;
+import graphql.schema.idl.TypeDefinitionRegistry;
 import io.corrlang.gqlintegration.schema.GraphQLSchemaWriter;
+import io.corrlang.gqlintegration.schema.StubWiring;
 import no.hvl.past.graph.GraphError;
 import no.hvl.past.graph.Sketch;
 import no.hvl.past.graph.Universe;
@@ -69,6 +75,7 @@ public class SchemaWriterTest extends GraphQLTest {
                 "\n";
 
         testExpectedSchema(result, expected);
+        testBuiltSchema(result);
     }
 
     private void testExpectedSchema(Sys result, String expected) throws IOException {
@@ -80,6 +87,30 @@ public class SchemaWriterTest extends GraphQLTest {
         bufferedWriter.flush();
         String actual = bos.toString("UTF-8");
         assertEquals(expected, actual);
+
+        StringBuilder direct = new StringBuilder();
+        writer.printTo(direct);
+        assertEquals(expected, direct.toString());
+    }
+
+    // the schema built directly must be the same as the one parsed from the SDL text (needs a query type)
+    private void testBuiltSchema(Sys result) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        GraphQLSchemaWriter printingWriter = new GraphQLSchemaWriter(result);
+        result.schema().accept(printingWriter);
+        BufferedWriter bufferedWriter = new BufferedWriter(new OutputStreamWriter(bos));
+        printingWriter.printToBuffer(bufferedWriter);
+        bufferedWriter.flush();
+
+        GraphQLSchemaWriter writer = new GraphQLSchemaWriter(result);
+        result.schema().accept(writer);
+        GraphQLSchema built = writer.buildSchema();
+
+        TypeDefinitionRegistry typeReg = new SchemaParser().parse(bos.toString("UTF-8"));
+        GraphQLSchema parsed = new SchemaGenerator().makeExecutableSchema(typeReg, StubWiring.createWiring(typeReg));
+        SchemaPrinter printer = new SchemaPrinter();
+        assertEquals(printer.print(parsed), printer.print(built));
+        assertEquals(printingWriter.getNameToText(), writer.getNameToText());
     }
 
     @Test
@@ -177,6 +208,7 @@ public class SchemaWriterTest extends GraphQLTest {
                 "\n";
 
         testExpectedSchema(new Sys.Builder("uri:test",result).build(), expected);
+        testBuiltSchema(new Sys.Builder("uri:test",result).build());
     }
 
     @Test
@@ -271,6 +303,7 @@ public class SchemaWriterTest extends GraphQLTest {
                 "\n";
 
         testExpectedSchema(actual,expected);
+        testBuiltSchema(actual);
     }
 
 